@@ -2,11 +2,15 @@ package main.jwt;
 
 import jakarta.annotation.Nonnull;
 import lombok.RequiredArgsConstructor;
+import main.interfaces.IUserService;
+import main.presence.PresenceRegistry;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Component;
 
@@ -14,11 +18,19 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class StompAuthChannelInterceptor implements ChannelInterceptor {
 
+    /** Session attribute holding the authenticated user's id, resolved once at CONNECT. */
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
     private final JwtService jwtService;
+    private final PresenceRegistry presenceRegistry;
+    private final IUserService userService;
 
     @Override
     public Message<?> preSend(@Nonnull Message<?> message, @Nonnull MessageChannel channel) {
-        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
         if (StompCommand.CONNECT.equals(accessor.getCommand())) {
             String authHeader = accessor.getFirstNativeHeader("Authorization");
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -27,8 +39,19 @@ public class StompAuthChannelInterceptor implements ChannelInterceptor {
                 if (username != null && jwtService.isTokenValid(token)) {
                     var auth = new UsernamePasswordAuthenticationToken(username, null, null);
                     accessor.setUser(auth);
+                    var sessionAttributes = accessor.getSessionAttributes();
+                    if (sessionAttributes != null) {
+                        userService.findIdByUsername(username).ifPresent(userId -> sessionAttributes.put(USER_ID_ATTRIBUTE, userId));
+                    }
+                    presenceRegistry.connect(accessor.getSessionId(), username);
                 }
             }
+        } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
+            presenceRegistry.disconnect(accessor.getSessionId());
+        } else if (SimpMessageType.HEARTBEAT.equals(accessor.getMessageType())) {
+            presenceRegistry.heartbeat(accessor.getSessionId());
+        } else if (accessor.getSessionId() != null) {
+            presenceRegistry.activity(accessor.getSessionId());
         }
         return message;
     }
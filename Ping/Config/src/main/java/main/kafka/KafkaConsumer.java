@@ -9,11 +9,13 @@ import main.kafka.appevents.FriendshipRequestEvent;
 import main.kafka.appevents.PostAddEvent;
 import main.kafka.appdto.NotifyResponse;
 import main.notification.Notification;
-import main.users.User;
+import main.services.feed.TimelineStore;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -22,32 +24,32 @@ public class KafkaConsumer {
     private final INotificationsService notificationsService;
     private final IFriendsService friendsService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final TimelineStore timelineStore;
 
     @KafkaListener(topics = "post-add-event", groupId = "ping-group", containerFactory = "kafkaListenerContainerFactory")
     public void handlePostCreated(PostAddEvent event) {
         log.info("Received post event: {}", event);
-        var acceptedFriends = friendsService.getAllAcceptedFriendships(event.getSender());
-        acceptedFriends.forEach(f -> {
-            User receiver;
-
-            if (f.getSender().getUsername().equals(event.getSender())) {
-                receiver = f.getReceiver();
-            } else {
-                receiver = f.getSender();
-            }
+        List<Long> friendIds = friendsService.getAcceptedFriendIds(event.getSenderId());
 
-            Notification notification = notificationsService.addNotification(receiver.getUsername(), "New post arrived from:" + event.getSender());
+        if (event.getPostId() != null) {
+            timelineStore.fanOut(event.getPostId(), event.getSenderId(), friendIds);
+        }
+        if (timelineStore.isPullAuthor(friendIds.size())) {
+            log.info("Skipping post notifications for '{}': {} friends read the post on pull", event.getSender(), friendIds.size());
+            return;
+        }
 
+        notificationsService.addNotifications(friendIds, "New post arrived from:" + event.getSender()).forEach(recipient -> {
             var response = NotifyResponse.builder().username(event.getSender())
                     .profilePicture(event.getSenderPicture())
-                    .text(notification.getText())
-                    .notificationId(notification.getId())
-                    .isRead(notification.isRead())
+                    .text(recipient.text())
+                    .notificationId(recipient.notificationId())
+                    .isRead(recipient.isRead())
                     .type("POST")
                     .build();
 
-            log.info("Sending to, post: /topic/notifications/{}", receiver.getUsername());
-            messagingTemplate.convertAndSend("/topic/notifications/" + receiver.getUsername(), response);
+            log.info("Sending to, post: /topic/notifications/{}", recipient.username());
+            messagingTemplate.convertAndSend("/topic/notifications/" + recipient.username(), response);
         });
     }
 
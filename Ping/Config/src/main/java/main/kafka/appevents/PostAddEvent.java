@@ -10,6 +10,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PostAddEvent {
+    private Long postId;
+    private Long senderId;
     private String sender;
     private String senderPicture;
     private String mediaType;
@@ -0,0 +1,7 @@
+package main.presence.Enums;
+
+public enum PresenceStatus {
+    ONLINE,
+    AWAY,
+    OFFLINE
+}
@@ -0,0 +1,127 @@
+package main.presence;
+
+import lombok.extern.slf4j.Slf4j;
+import main.presence.Enums.PresenceStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory presence fed by the STOMP inbound channel. A user is online while at least one
+ * session is alive and has sent a frame within {@code chat.presence.away-after-ms}, away when the
+ * sessions only heartbeat, and offline otherwise. Sessions that stop heartbeating without a
+ * DISCONNECT are dropped by a periodic sweep. Nothing here is persisted.
+ */
+@Slf4j
+@Component
+public class PresenceRegistry {
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+
+    @Value("${chat.presence.away-after-ms:300000}")
+    private long awayAfterMs;
+
+    @Value("${chat.presence.session-timeout-ms:60000}")
+    private long sessionTimeoutMs;
+
+    public void connect(String sessionId, String username) {
+        long now = System.currentTimeMillis();
+        sessions.put(sessionId, new Session(username, now, now));
+        sessionsByUser.compute(username, (user, ids) -> {
+            Set<String> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            result.add(sessionId);
+            return result;
+        });
+        log.debug("User '{}' connected with session {}", username, sessionId);
+    }
+
+    public void disconnect(String sessionId) {
+        var session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        sessionsByUser.computeIfPresent(session.username, (user, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+        log.debug("User '{}' disconnected session {}", session.username, sessionId);
+    }
+
+    public void heartbeat(String sessionId) {
+        var session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    public void activity(String sessionId) {
+        var session = sessions.get(sessionId);
+        if (session != null) {
+            long now = System.currentTimeMillis();
+            session.lastSeen = now;
+            session.lastActivity = now;
+        }
+    }
+
+    public PresenceStatus status(String username) {
+        var ids = sessionsByUser.get(username);
+        if (ids == null) {
+            return PresenceStatus.OFFLINE;
+        }
+        long now = System.currentTimeMillis();
+        PresenceStatus status = PresenceStatus.OFFLINE;
+        for (String id : ids) {
+            var session = sessions.get(id);
+            if (session == null || now - session.lastSeen > sessionTimeoutMs) {
+                continue;
+            }
+            if (now - session.lastActivity <= awayAfterMs) {
+                return PresenceStatus.ONLINE;
+            }
+            status = PresenceStatus.AWAY;
+        }
+        return status;
+    }
+
+    public Map<String, PresenceStatus> statuses(Collection<String> usernames) {
+        Map<String, PresenceStatus> result = new LinkedHashMap<>();
+        for (String username : usernames) {
+            result.put(username, status(username));
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.sweep-interval-ms:30000}")
+    public void sweep() {
+        long cutoff = System.currentTimeMillis() - sessionTimeoutMs;
+        int dropped = 0;
+        for (var entry : sessions.entrySet()) {
+            if (entry.getValue().lastSeen < cutoff) {
+                disconnect(entry.getKey());
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.info("Dropped {} silent STOMP sessions from presence", dropped);
+        }
+    }
+
+    private static final class Session {
+        private final String username;
+        private volatile long lastSeen;
+        private volatile long lastActivity;
+
+        private Session(String username, long lastSeen, long lastActivity) {
+            this.username = username;
+            this.lastSeen = lastSeen;
+            this.lastActivity = lastActivity;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package main.presence;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.interfaces.IMessageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects "is typing" signals per conversation and fans out at most one frame per conversation
+ * per {@code chat.typing.flush-interval-ms} to {@code /topic/conversations/{id}/typing}, listing
+ * everyone currently typing. Repeated "typing" signals only extend a user's entry, which expires
+ * after {@code chat.typing.ttl-ms} without a refresh; only starts, stops and expiries are sent.
+ * <p>
+ * Nothing here touches the database: membership is checked against the in-memory index by the
+ * user id cached on the STOMP session at CONNECT, and each (conversation, user) pair is limited
+ * by a token bucket of {@code chat.typing.burst} frames refilled at
+ * {@code chat.typing.rate-per-second}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TypingCoalescer {
+
+    private final IMessageService messagesService;
+    private final SimpMessagingTemplate simpMessagingTemplate;
+
+    private final Map<Long, Map<String, Long>> typists = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final Map<TypingKey, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    @Value("${chat.typing.ttl-ms:6000}")
+    private long ttlMs;
+
+    @Value("${chat.typing.rate-per-second:2}")
+    private double ratePerSecond;
+
+    @Value("${chat.typing.burst:4}")
+    private int burst;
+
+    public void typing(Long conversationId, String username, Long userId, boolean typing) {
+        long now = System.currentTimeMillis();
+        var bucket = buckets.computeIfAbsent(new TypingKey(conversationId, userId), key -> new TokenBucket(burst, now));
+        if (!bucket.tryAcquire(now, ratePerSecond / 1000, burst)) {
+            log.debug("Dropped typing signal from '{}' in conversation {}: rate limited", username, conversationId);
+            return;
+        }
+        if (!typing) {
+            var current = typists.get(conversationId);
+            if (current != null && current.remove(username) != null) {
+                dirty.add(conversationId);
+            }
+            return;
+        }
+        var current = typists.get(conversationId);
+        if (current != null && current.replace(username, now + ttlMs) != null) {
+            return;
+        }
+        if (!messagesService.isMember(conversationId, userId)) {
+            log.debug("Ignored typing signal from non-member '{}' in conversation {}", username, conversationId);
+            return;
+        }
+        typists.compute(conversationId, (id, users) -> {
+            Map<String, Long> result = users == null ? new ConcurrentHashMap<>() : users;
+            result.put(username, now + ttlMs);
+            return result;
+        });
+        dirty.add(conversationId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.typing.flush-interval-ms:500}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        buckets.values().removeIf(bucket -> bucket.idleSince(now - ttlMs));
+        for (var entry : typists.entrySet()) {
+            if (entry.getValue().values().removeIf(expiresAt -> expiresAt <= now)) {
+                dirty.add(entry.getKey());
+            }
+        }
+        for (var iterator = dirty.iterator(); iterator.hasNext(); ) {
+            Long conversationId = iterator.next();
+            iterator.remove();
+            var current = typists.computeIfPresent(conversationId, (id, users) -> users.isEmpty() ? null : users);
+            List<String> usernames = current == null ? List.of() : List.copyOf(current.keySet());
+            simpMessagingTemplate.convertAndSend("/topic/conversations/" + conversationId + "/typing",
+                    new TypingEvent(conversationId, usernames));
+        }
+    }
+
+    private record TypingKey(Long conversationId, Long userId) {
+    }
+
+    /** A bucket idle for the TTL has long since refilled, so dropping it loses nothing. */
+    private static final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        private synchronized boolean tryAcquire(long now, double tokensPerMs, int capacity) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerMs);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        private synchronized boolean idleSince(long cutoff) {
+            return refilledAt <= cutoff;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package main.presence;
+
+import java.util.List;
+
+public record TypingEvent(Long conversationId, List<String> typing) {
+}
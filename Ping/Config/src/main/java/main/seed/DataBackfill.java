@@ -0,0 +1,83 @@
+package main.seed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.messages.ConversationMemberRepository;
+import main.messages.ConversationRepository;
+import main.messages.MessagesRepository;
+import main.posts.LikeRepository;
+import main.posts.PostsRepository;
+import main.services.search.MessageSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DataBackfill implements CommandLineRunner {
+    private final PostsRepository postsRepository;
+    private final LikeRepository likeRepository;
+    private final MessagesRepository messagesRepository;
+    private final ConversationRepository conversationRepository;
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final PrivateConversationMerger privateConversationMerger;
+    private final MessageSearchIndex messageSearchIndex;
+
+    @Value("${likes.counter.reconcile-on-startup:true}")
+    private boolean reconcileLikeCounts;
+
+    @Value("${comments.count.reconcile-on-startup:true}")
+    private boolean reconcileCommentCounts;
+
+    @Override
+    public void run(String... args) {
+        int duplicateLikes = likeRepository.deleteDuplicates();
+        likeRepository.ensureUniquePostUser();
+        log.info("Removed {} duplicate likes", duplicateLikes);
+
+        if (reconcileLikeCounts) {
+            int likeCounts = postsRepository.reconcileLikeCounts();
+            log.info("Reconciled like_count for {} posts", likeCounts);
+        }
+
+        if (reconcileCommentCounts) {
+            int commentCounts = postsRepository.reconcileCommentCounts();
+            log.info("Reconciled comment_count for {} posts", commentCounts);
+        }
+
+        int sequencedMessages = messagesRepository.backfillSeq();
+        messagesRepository.ensureConversationSeqIndex();
+        int conversations = conversationRepository.reconcileLastSeq();
+        log.info("Assigned seq to {} messages and reconciled last_seq for {} conversations", sequencedMessages, conversations);
+
+        mergePrivateConversations();
+
+        conversationMemberRepository.dropLastActivityAt();
+        int previews = conversationRepository.backfillLastMessage();
+        int members = conversationMemberRepository.backfillFromParticipants(System.currentTimeMillis());
+        log.info("Backfilled last message for {} conversations and {} inbox memberships", previews, members);
+    }
+
+    private void mergePrivateConversations() {
+        int paired = 0;
+        int merged = 0;
+        try {
+            for (var batch = privateConversationMerger.nextBatch(); !batch.isEmpty(); batch = privateConversationMerger.nextBatch()) {
+                for (var pair : batch) {
+                    if (privateConversationMerger.pair(pair)) {
+                        paired++;
+                    } else {
+                        merged++;
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            log.error("Private conversation merge stopped after {} paired and {} merged: {}", paired, merged, ex.getMessage(), ex);
+        }
+        log.info("Assigned user pairs to {} private conversations and merged {} duplicates", paired, merged);
+        if (merged > 0 && messageSearchIndex.rebuild()) {
+            log.info("Queued a message search index rebuild for the merged conversations");
+        }
+    }
+}
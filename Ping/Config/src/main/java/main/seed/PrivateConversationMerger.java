@@ -0,0 +1,66 @@
+package main.seed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.messages.ConversationMemberRepository;
+import main.messages.ConversationRepository;
+import main.messages.MessagesRepository;
+import main.messages.PrivatePair;
+import main.services.messages.ConversationMembershipIndex;
+import main.services.messages.RecentMessageCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Gives every PRIVATE conversation its canonical (low, high) user pair. When the pair is
+ * already taken, the conversation is folded into the one holding it: messages move over and the
+ * merged history is renumbered by creation time, the duplicate's members and row are deleted,
+ * and the survivor's members are marked read up to the new last seq. Each conversation is
+ * handled in its own transaction; {@link DataBackfill} drives the batches.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PrivateConversationMerger {
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final MessagesRepository messagesRepository;
+    private final RecentMessageCache recentMessageCache;
+    private final ConversationMembershipIndex conversationMembershipIndex;
+
+    @Value("${chat.private-merge.batch-size:500}")
+    private int batchSize;
+
+    public List<PrivatePair> nextBatch() {
+        return conversationRepository.findUnpairedPrivate(PageRequest.of(0, batchSize));
+    }
+
+    @Transactional
+    public boolean pair(PrivatePair pair) {
+        conversationRepository.lockPrivatePair(pair.userLow(), pair.userHigh());
+        var survivor = conversationRepository.findPrivatePair(pair.userLow(), pair.userHigh());
+        if (survivor.isEmpty()) {
+            conversationRepository.assignPrivatePair(pair.conversationId(), pair.userLow(), pair.userHigh());
+            return true;
+        }
+
+        Long survivorId = survivor.get().getId();
+        Long duplicateId = pair.conversationId();
+        int moved = messagesRepository.parkForMerge(survivorId, duplicateId);
+        messagesRepository.renumber(survivorId);
+        conversationRepository.refreshLastMessage(survivorId);
+        conversationMemberRepository.deleteByConversationId(duplicateId);
+        conversationMemberRepository.resetAfterMerge(survivorId);
+        conversationRepository.deleteParticipants(duplicateId);
+        conversationRepository.deleteConversationRow(duplicateId);
+        recentMessageCache.invalidate(survivorId);
+        conversationMembershipIndex.invalidate(duplicateId);
+        log.info("Merged duplicate private conversation {} into {} ({} messages renumbered)", duplicateId, survivorId, moved);
+        return false;
+    }
+}
@@ -0,0 +1,259 @@
+package main.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.posts.PostsRepository;
+import main.users.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Renders downscaled copies of uploaded images next to the original as
+ * {@code <name>_w<width>.jpg} (or {@code .png} when the source has alpha) on a small bounded
+ * pool, then records the available widths on the post or user. Jobs that do not fit the queue
+ * are dropped: the original stays servable and the variants column stays empty.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaDerivativeService {
+
+    private static final String VARIANT_MARKER = "_w";
+    private static final String JPG = ".jpg";
+    private static final String PNG = ".png";
+
+    private final PostsRepository postsRepository;
+    private final UserRepository userRepository;
+
+    @Value("${media.derivatives.widths:64,320,720}")
+    private int[] widths;
+
+    @Value("${media.derivatives.threads:2}")
+    private int threads;
+
+    @Value("${media.derivatives.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${media.derivatives.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${media.derivatives.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        Arrays.sort(widths);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "media-derivatives-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public void submitForPost(Long postId, String mediaPath) {
+        submit(mediaPath, variants -> postsRepository.updateMediaVariants(postId, mediaPath, variants));
+    }
+
+    public void submitForUser(Long userId, String picturePath) {
+        submit(picturePath, variants -> userRepository.updateProfilePictureVariants(userId, picturePath, variants));
+    }
+
+    public Optional<Path> variantFor(String mediaPath, int requestedWidth) {
+        for (int width : widths) {
+            if (width < requestedWidth) {
+                continue;
+            }
+            for (boolean png : new boolean[]{false, true}) {
+                Path variant = variantPath(mediaPath, width, png);
+                if (Files.isRegularFile(variant)) {
+                    return Optional.of(variant);
+                }
+            }
+            break;
+        }
+        return Optional.empty();
+    }
+
+    public static Path variantPath(String mediaPath, int width, boolean png) {
+        int dot = mediaPath.lastIndexOf('.');
+        int slash = mediaPath.lastIndexOf('/');
+        String base = dot > slash ? mediaPath.substring(0, dot) : mediaPath;
+        return Paths.get(base + VARIANT_MARKER + width + (png ? PNG : JPG));
+    }
+
+    /**
+     * Expands a stored variants hint ({@code 64.jpg,320.jpg}) into the paths of the variant files.
+     * Hints written before the extension was recorded hold bare widths and are resolved on disk.
+     */
+    public static List<String> variantUrls(String mediaPath, String variants) {
+        if (mediaPath == null || variants == null || variants.isBlank()) {
+            return List.of();
+        }
+        List<String> urls = new ArrayList<>();
+        for (String token : variants.split(",")) {
+            int dot = token.indexOf('.');
+            try {
+                int width = Integer.parseInt(dot < 0 ? token.trim() : token.substring(0, dot).trim());
+                boolean png = dot < 0 ? !Files.exists(variantPath(mediaPath, width, false)) : token.endsWith(PNG);
+                urls.add(variantPath(mediaPath, width, png).toString().replace('\\', '/'));
+            } catch (NumberFormatException ex) {
+                log.debug("Ignoring malformed variant '{}' of {}", token, mediaPath);
+            }
+        }
+        return urls;
+    }
+
+    private void submit(String mediaPath, VariantRecorder recorder) {
+        try {
+            executor.execute(() -> render(mediaPath, recorder));
+        } catch (RejectedExecutionException ex) {
+            log.warn("Derivative queue full, skipping variants for {}", mediaPath);
+        }
+    }
+
+    private void render(String mediaPath, VariantRecorder recorder) {
+        long started = System.nanoTime();
+        try {
+            String existing = Arrays.stream(widths)
+                    .mapToObj(width -> Files.exists(variantPath(mediaPath, width, false)) ? width + JPG
+                            : Files.exists(variantPath(mediaPath, width, true)) ? width + PNG : null)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.joining(","));
+            if (!existing.isEmpty()) {
+                recorder.record(existing);
+                log.debug("Reused variants [{}] for shared media {}", existing, mediaPath);
+                return;
+            }
+
+            BufferedImage source = read(Paths.get(mediaPath));
+            if (source == null) {
+                log.info("Skipping derivatives for {}: not a readable image", mediaPath);
+                return;
+            }
+            boolean alpha = source.getColorModel().hasAlpha();
+            List<String> written = new ArrayList<>();
+            for (int width : widths) {
+                if (width >= source.getWidth()) {
+                    break;
+                }
+                write(scale(source, width, alpha), variantPath(mediaPath, width, alpha), alpha);
+                written.add(width + (alpha ? PNG : JPG));
+            }
+            if (written.isEmpty()) {
+                return;
+            }
+            String variants = String.join(",", written);
+            if (recorder.record(variants) == 0) {
+                log.info("Media {} was replaced before its variants were recorded", mediaPath);
+                return;
+            }
+            log.info("Rendered variants [{}] for {} in {} ms", variants, mediaPath, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception ex) {
+            log.warn("Failed to render derivatives for {}: {}", mediaPath, ex.getMessage(), ex);
+        }
+    }
+
+    private BufferedImage read(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Skipping derivatives for {}: {} pixels exceeds limit of {}", path, pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, boolean alpha) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            int currentHeight = currentWidth == width ? height : Math.max(1, (int) Math.round((double) source.getHeight() * currentWidth / source.getWidth()));
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    private void write(BufferedImage image, Path target, boolean png) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(png ? "png" : "jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(part.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!png) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private interface VariantRecorder {
+        int record(String variants);
+    }
+}
@@ -0,0 +1,204 @@
+package main.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.posts.PostsRepository;
+import main.users.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.StreamSupport;
+
+/**
+ * Deletes files under {@code uploads/} that no post or profile references any more. Each pass
+ * resumes after the last file of the previous one, visits at most {@code media.gc.max-files-per-run}
+ * files in sorted order, checks them against the database in batches with a pause in between,
+ * and never touches files younger than {@code media.gc.grace-ms} or the upload staging area.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaGarbageCollector {
+
+    private static final Path UPLOADS_ROOT = Paths.get("uploads");
+    private static final String TMP_DIR = "tmp";
+    private static final Pattern VARIANT = Pattern.compile("^(.+)_w\\d+\\.(jpg|png)$");
+
+    private final PostsRepository postsRepository;
+    private final UserRepository userRepository;
+    private final StorageService storageService;
+    private final MediaGcMetrics mediaGcMetrics;
+
+    @Value("${media.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.gc.grace-ms:86400000}")
+    private long graceMs;
+
+    @Value("${media.gc.batch-size:500}")
+    private int batchSize;
+
+    @Value("${media.gc.batch-pause-ms:200}")
+    private long batchPauseMs;
+
+    @Value("${media.gc.max-files-per-run:20000}")
+    private int maxFilesPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private List<String> cursor = List.of();
+
+    @Scheduled(initialDelayString = "${media.gc.initial-delay-ms:600000}", fixedDelayString = "${media.gc.interval-ms:3600000}")
+    public void sweep() {
+        if (!enabled || !Files.isDirectory(UPLOADS_ROOT) || !running.compareAndSet(false, true)) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        int scanned = 0;
+        int deleted = 0;
+        try {
+            List<Path> files = new ArrayList<>();
+            collect(UPLOADS_ROOT, files);
+            long cutoff = startedAt - graceMs;
+            for (int from = 0; from < files.size(); from += batchSize) {
+                if (from > 0 && !pause()) {
+                    break;
+                }
+                List<Path> batch = files.subList(from, Math.min(files.size(), from + batchSize));
+                deleted += sweepBatch(batch, cutoff);
+                scanned += batch.size();
+                mediaGcMetrics.recordScanned(batch.size());
+                cursor = components(batch.get(batch.size() - 1));
+            }
+            if (files.size() < maxFilesPerRun) {
+                cursor = List.of();
+            }
+        } catch (Exception ex) {
+            log.error("Media GC pass failed after {} files: {}", scanned, ex.getMessage(), ex);
+        } finally {
+            running.set(false);
+            mediaGcMetrics.recordRun(startedAt, scanned, deleted);
+        }
+    }
+
+    private int sweepBatch(List<Path> batch, long cutoff) throws IOException {
+        List<String> candidates = new ArrayList<>();
+        for (Path file : batch) {
+            if (Files.getLastModifiedTime(file).toMillis() >= cutoff) {
+                continue;
+            }
+            // A derivative lives and dies with its original. A variant-looking name without one is
+            // either an orphaned derivative or an upload that happens to be named like one, so it
+            // is only deleted when the database does not reference it either.
+            Matcher variant = VARIANT.matcher(file.getFileName().toString());
+            if (variant.matches() && originalExists(file, variant.group(1))) {
+                continue;
+            }
+            candidates.add(relative(file));
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> referenced = new HashSet<>(postsRepository.findMediaUrlsIn(candidates));
+        referenced.addAll(userRepository.findProfilePicturesIn(candidates));
+        int deleted = 0;
+        for (String candidate : candidates) {
+            if (referenced.contains(candidate)) {
+                continue;
+            }
+            long reclaimed = storageService.reclaim(candidate, cutoff);
+            if (reclaimed >= 0) {
+                mediaGcMetrics.recordDeleted(reclaimed);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private boolean collect(Path directory, List<Path> files) throws IOException {
+        List<Path> children;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            children = StreamSupport.stream(stream.spliterator(), false)
+                    .sorted((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()))
+                    .toList();
+        }
+        for (Path child : children) {
+            if (files.size() >= maxFilesPerRun) {
+                return false;
+            }
+            if (directory.equals(UPLOADS_ROOT) && child.getFileName().toString().equals(TMP_DIR)) {
+                continue;
+            }
+            List<String> position = components(child);
+            if (Files.isDirectory(child)) {
+                boolean containsCursor = cursor.size() > position.size() && cursor.subList(0, position.size()).equals(position);
+                if ((containsCursor || compare(position, cursor) > 0) && !collect(child, files)) {
+                    return false;
+                }
+            } else if (Files.isRegularFile(child) && compare(position, cursor) > 0) {
+                files.add(child);
+            }
+        }
+        return true;
+    }
+
+    private boolean originalExists(Path variant, String base) throws IOException {
+        Path directory = variant.getParent();
+        if (Files.exists(directory.resolve(base))) {
+            return true;
+        }
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory, base.replaceAll("[\\[\\]{}*?,\\\\]", "?") + ".*")) {
+            for (Path sibling : siblings) {
+                if (!VARIANT.matcher(sibling.getFileName().toString()).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPauseMs);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String relative(Path file) {
+        return UPLOADS_ROOT + "/" + String.join("/", components(file));
+    }
+
+    private List<String> components(Path file) {
+        List<String> names = new ArrayList<>();
+        for (Path name : UPLOADS_ROOT.relativize(file)) {
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    private int compare(List<String> a, List<String> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int result = a.get(i).compareTo(b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+}
@@ -0,0 +1,59 @@
+package main.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class MediaGcMetrics {
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder filesScanned = new LongAdder();
+    private final LongAdder filesDeleted = new LongAdder();
+    private final LongAdder bytesReclaimed = new LongAdder();
+    private final AtomicLong lastRunAt = new AtomicLong();
+    private final AtomicLong lastRunMillis = new AtomicLong();
+
+    public void recordScanned(int files) {
+        filesScanned.add(files);
+    }
+
+    public void recordDeleted(long bytes) {
+        filesDeleted.increment();
+        bytesReclaimed.add(bytes);
+    }
+
+    public void recordRun(long startedAt, int scanned, int deleted) {
+        runs.increment();
+        lastRunAt.set(startedAt);
+        lastRunMillis.set(System.currentTimeMillis() - startedAt);
+        log.info("Media GC pass scanned {} files and deleted {} in {} ms", scanned, deleted, lastRunMillis.get());
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getFilesScanned() {
+        return filesScanned.sum();
+    }
+
+    public long getFilesDeleted() {
+        return filesDeleted.sum();
+    }
+
+    public long getBytesReclaimed() {
+        return bytesReclaimed.sum();
+    }
+
+    public long getLastRunAt() {
+        return lastRunAt.get();
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis.get();
+    }
+}
@@ -1,59 +1,322 @@
 package main.storage;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import main.media.MediaBlob;
+import main.media.MediaBlobRepository;
 import main.storage.Enums.StorageType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
+/**
+ * Stores uploads on local disk. In content-addressed mode (the default) files are keyed by their
+ * SHA-256 under {@code uploads/blobs/ab/cd/<sha256>.<ext>} and shared between posts and profiles;
+ * {@link MediaBlob#getRefCount()} tracks the references and the file is removed with the last one.
+ * A row left at zero references by an interrupted release is reclaimed by the next upload of the
+ * same content.
+ * Legacy {@code uploads/posts} and {@code uploads/profiles} files are still deleted directly.
+ */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class StorageService {
 
     private static final String BASE_UPLOAD_DIR = "uploads";
     private static final String POSTS_DIR = "posts";
     private static final String PROFILES_DIR = "profiles";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String TMP_DIR = "tmp";
+    private static final String PART_SUFFIX = ".part";
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAX_COMMIT_ATTEMPTS = 3;
 
-    public String store(MultipartFile file, StorageType type) {
-        try {
-            String targetFolder = switch (type) {
-                case POSTS -> POSTS_DIR;
-                case PROFILES -> PROFILES_DIR;
-            };
-
-            Path uploadPath = Paths.get(BASE_UPLOAD_DIR, targetFolder);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-                log.info("Created directory: {}", uploadPath.toAbsolutePath());
-            }
+    private final MediaBlobRepository mediaBlobRepository;
+    private final Object[] locks = IntStream.range(0, LOCK_STRIPES).mapToObj(i -> new Object()).toArray();
 
-            String filename = UUID.randomUUID() + "_" + file.getOriginalFilename();
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath);
+    @Value("${storage.content-addressed:true}")
+    private boolean contentAddressed;
 
-            log.info("Stored {} file at: {}", type.name().toLowerCase(), filePath.toAbsolutePath());
+    @Value("${storage.stream.buffer-bytes:65536}")
+    private int bufferBytes;
 
-            return BASE_UPLOAD_DIR + "/" + targetFolder + "/" + filename;
+    @Value("${storage.stream.max-bytes:2147483648}")
+    private long maxBytes;
 
-        } catch (Exception ex) {
+    public String store(MultipartFile file, StorageType type) {
+        try (InputStream in = file.getInputStream()) {
+            return store(in, file.getOriginalFilename(), type).path();
+        } catch (IOException ex) {
             log.error("Failed to store file: {}", ex.getMessage(), ex);
             throw new RuntimeException("Could not store file", ex);
         }
     }
 
+    public StoredFile store(InputStream in, String originalFilename, StorageType type) {
+        return contentAddressed ? storeBlob(in, originalFilename, type) : storeNamed(in, originalFilename, type);
+    }
+
     public void delete(String filePath) {
+        if (filePath != null && filePath.startsWith(BASE_UPLOAD_DIR + "/" + BLOBS_DIR + "/")) {
+            releaseBlob(filePath);
+            return;
+        }
         try {
             Path path = Paths.get(filePath);
             Files.deleteIfExists(path);
+            deleteVariants(path);
             log.info("Deleted file at: {}", filePath);
         } catch (IOException e) {
             log.warn("Could not delete file at {}: {}", filePath, e.getMessage());
         }
     }
-}
 
+    public StoredFile adopt(Path file, String originalFilename, StorageType type) {
+        try {
+            StoredFile part = hash(file);
+            return contentAddressed ? commitBlob(file, part, originalFilename, type) : commitNamed(file, part, originalFilename, type);
+        } catch (IOException ex) {
+            log.error("Failed to adopt file {}: {}", file, ex.getMessage(), ex);
+            throw new RuntimeException("Could not store file", ex);
+        }
+    }
+
+    public long reclaim(String filePath, long idleCutoff) {
+        Path path = Paths.get(filePath);
+        if (filePath.startsWith(BASE_UPLOAD_DIR + "/" + BLOBS_DIR + "/")) {
+            String sha256 = path.getFileName().toString().split("\\.", 2)[0];
+            synchronized (lockFor(sha256)) {
+                if (mediaBlobRepository.existsByPath(filePath) && mediaBlobRepository.deleteIfIdleSince(filePath, idleCutoff) == 0) {
+                    return -1;
+                }
+                return deleteWithVariants(path);
+            }
+        }
+        return deleteWithVariants(path);
+    }
+
+    private long deleteWithVariants(Path path) {
+        try {
+            long size = Files.exists(path) ? Files.size(path) : 0;
+            Files.deleteIfExists(path);
+            deleteVariants(path);
+            log.info("Reclaimed unreferenced file at: {} ({} bytes)", path, size);
+            return size;
+        } catch (IOException e) {
+            log.warn("Could not reclaim file at {}: {}", path, e.getMessage());
+            return -1;
+        }
+    }
+
+    private StoredFile storeNamed(InputStream in, String originalFilename, StorageType type) {
+        Path partPath = Paths.get(BASE_UPLOAD_DIR, folder(type), UUID.randomUUID() + PART_SUFFIX);
+        try {
+            return commitNamed(partPath, writePart(in, partPath), originalFilename, type);
+        } catch (IOException ex) {
+            deletePart(partPath);
+            log.error("Failed to store file: {}", ex.getMessage(), ex);
+            throw new RuntimeException("Could not store file", ex);
+        }
+    }
+
+    private StoredFile storeBlob(InputStream in, String originalFilename, StorageType type) {
+        Path partPath = Paths.get(BASE_UPLOAD_DIR, TMP_DIR, UUID.randomUUID() + PART_SUFFIX);
+        try {
+            return commitBlob(partPath, writePart(in, partPath), originalFilename, type);
+        } catch (IOException ex) {
+            deletePart(partPath);
+            log.error("Failed to store file: {}", ex.getMessage(), ex);
+            throw new RuntimeException("Could not store file", ex);
+        }
+    }
+
+    private StoredFile commitNamed(Path partPath, StoredFile part, String originalFilename, StorageType type) throws IOException {
+        String targetFolder = folder(type);
+        Path uploadPath = Paths.get(BASE_UPLOAD_DIR, targetFolder);
+        String filename = UUID.randomUUID() + "_" + sanitize(originalFilename);
+        Path filePath = uploadPath.resolve(filename);
+        Files.createDirectories(uploadPath);
+        Files.move(partPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Stored {} file at: {} ({} bytes, sha256={})", type.name().toLowerCase(), filePath.toAbsolutePath(), part.size(), part.sha256());
+        return new StoredFile(BASE_UPLOAD_DIR + "/" + targetFolder + "/" + filename, part.size(), part.sha256());
+    }
+
+    private StoredFile commitBlob(Path partPath, StoredFile part, String originalFilename, StorageType type) throws IOException {
+        String sha256 = part.sha256();
+        synchronized (lockFor(sha256)) {
+            for (int attempt = 0; attempt < MAX_COMMIT_ATTEMPTS; attempt++) {
+                if (mediaBlobRepository.retain(sha256, System.currentTimeMillis()) > 0) {
+                    deletePart(partPath);
+                    var blob = mediaBlobRepository.findBySha256(sha256)
+                            .orElseThrow(() -> new IllegalStateException("Blob " + sha256 + " vanished after retain"));
+                    log.info("Deduplicated {} upload onto blob {} ({} bytes)", type.name().toLowerCase(), blob.getPath(), blob.getSize());
+                    return new StoredFile(blob.getPath(), blob.getSize(), sha256);
+                }
+
+                String path = blobPath(sha256, extension(originalFilename));
+                var stale = mediaBlobRepository.findBySha256(sha256)
+                        .filter(blob -> blob.getRefCount() <= 0 && !blob.getPath().equals(path))
+                        .map(MediaBlob::getPath);
+                Path target = Paths.get(path);
+                Files.createDirectories(target.getParent());
+                Files.move(partPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (mediaBlobRepository.insertOrReclaim(sha256, path, part.size(), System.currentTimeMillis()) > 0) {
+                    stale.ifPresent(previous -> deleteWithVariants(Paths.get(previous)));
+                    log.info("Stored {} file as new blob: {} ({} bytes)", type.name().toLowerCase(), target.toAbsolutePath(), part.size());
+                    return new StoredFile(path, part.size(), sha256);
+                }
+                log.debug("Blob {} was registered concurrently, retrying as a reference", sha256);
+                Files.move(target, partPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        deletePart(partPath);
+        throw new IllegalStateException("Could not register blob " + sha256 + " after " + MAX_COMMIT_ATTEMPTS + " attempts");
+    }
+
+    private void releaseBlob(String filePath) {
+        String sha256 = Paths.get(filePath).getFileName().toString().split("\\.", 2)[0];
+        synchronized (lockFor(sha256)) {
+            int released = mediaBlobRepository.releaseAndDeleteIfUnreferenced(filePath);
+            if (released < 0) {
+                log.warn("Release of unknown or unreferenced blob {} ignored", filePath);
+                return;
+            }
+            if (released == 0) {
+                log.info("Released reference to blob {}", filePath);
+                return;
+            }
+            try {
+                Path path = Paths.get(filePath);
+                Files.deleteIfExists(path);
+                deleteVariants(path);
+                log.info("Deleted blob at: {} after its last reference was released", filePath);
+            } catch (IOException e) {
+                log.warn("Could not delete blob at {}: {}", filePath, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteVariants(Path original) throws IOException {
+        Path directory = original.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String glob = (dot > 0 ? name.substring(0, dot) : name).replaceAll("[\\[\\]{}*?,\\\\]", "?") + "_w*";
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(directory, glob)) {
+            for (Path variant : variants) {
+                Files.deleteIfExists(variant);
+            }
+        }
+    }
+
+    private StoredFile hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+        long size = 0;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                size += buffer.remaining();
+                digest.update(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+        }
+        return new StoredFile(file.toString(), size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private StoredFile writePart(InputStream in, Path partPath) throws IOException {
+        Files.createDirectories(partPath.getParent());
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > maxBytes) {
+                    throw new IllegalArgumentException("File exceeds the maximum size of " + maxBytes + " bytes");
+                }
+                digest.update(buffer.array(), 0, buffer.limit());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+            target.force(false);
+        } catch (IllegalArgumentException ex) {
+            deletePart(partPath);
+            log.warn("Rejected upload at {}: {}", partPath, ex.getMessage());
+            throw ex;
+        }
+        return new StoredFile(partPath.toString(), size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private String blobPath(String sha256, String extension) {
+        return BASE_UPLOAD_DIR + "/" + BLOBS_DIR + "/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + extension;
+    }
+
+    private String extension(String originalFilename) {
+        String name = sanitize(originalFilename);
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || name.length() - dot > 10) {
+            return "";
+        }
+        return name.substring(dot).toLowerCase();
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), locks.length)];
+    }
+
+    private String folder(StorageType type) {
+        return switch (type) {
+            case POSTS -> POSTS_DIR;
+            case PROFILES -> PROFILES_DIR;
+        };
+    }
+
+    private String sanitize(String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank()) {
+            return "upload";
+        }
+        String name = originalFilename.substring(Math.max(originalFilename.lastIndexOf('/'), originalFilename.lastIndexOf('\\')) + 1);
+        return name.isBlank() ? "upload" : name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private void deletePart(Path partPath) {
+        try {
+            Files.deleteIfExists(partPath);
+        } catch (IOException e) {
+            log.warn("Could not delete partial upload {}: {}", partPath, e.getMessage());
+        }
+    }
+}
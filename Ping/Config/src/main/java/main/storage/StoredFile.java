@@ -0,0 +1,4 @@
+package main.storage;
+
+public record StoredFile(String path, long size, String sha256) {
+}
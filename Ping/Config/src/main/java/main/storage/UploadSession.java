@@ -0,0 +1,5 @@
+package main.storage;
+
+public record UploadSession(String id, String username, String filename, String type, String description,
+                            long size, long offset, long expiresAt) {
+}
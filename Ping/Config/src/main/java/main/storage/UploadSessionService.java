@@ -0,0 +1,229 @@
+package main.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.storage.Enums.StorageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Resumable uploads kept entirely on disk under {@code uploads/tmp/sessions/<id>}: a
+ * {@code meta.properties} with the declared post and a {@code data} file whose length is the
+ * committed offset. Chunks must start at that offset; sessions idle longer than
+ * {@code uploads.session.ttl-ms} are deleted by a scheduled sweep.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final Path SESSIONS_ROOT = Paths.get("uploads", "tmp", "sessions");
+    private static final String META_FILE = "meta.properties";
+    private static final String DATA_FILE = "data";
+    private static final int LOCK_STRIPES = 64;
+
+    private final StorageService storageService;
+    private final Object[] locks = IntStream.range(0, LOCK_STRIPES).mapToObj(i -> new Object()).toArray();
+
+    @Value("${uploads.session.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${storage.stream.buffer-bytes:65536}")
+    private int bufferBytes;
+
+    @Value("${storage.stream.max-bytes:2147483648}")
+    private long maxBytes;
+
+    public UploadSession create(String username, String filename, String type, String description, long size) {
+        if (size <= 0 || size > maxBytes) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxBytes + " bytes");
+        }
+        String id = UUID.randomUUID().toString();
+        Path directory = SESSIONS_ROOT.resolve(id);
+        Properties meta = new Properties();
+        meta.setProperty("username", username);
+        meta.setProperty("filename", filename == null ? "" : filename);
+        meta.setProperty("type", type);
+        meta.setProperty("description", description == null ? "" : description);
+        meta.setProperty("size", Long.toString(size));
+        try {
+            Files.createDirectories(directory);
+            Files.createFile(directory.resolve(DATA_FILE));
+            try (Writer writer = Files.newBufferedWriter(directory.resolve(META_FILE), StandardCharsets.UTF_8)) {
+                meta.store(writer, null);
+            }
+        } catch (IOException ex) {
+            deleteDirectory(directory);
+            log.error("Failed to create upload session for '{}': {}", username, ex.getMessage(), ex);
+            throw new RuntimeException("Could not create upload session", ex);
+        }
+        log.info("Created upload session {} for '{}' ({} bytes)", id, username, size);
+        return read(id).orElseThrow();
+    }
+
+    public Optional<UploadSession> find(String id) {
+        return validId(id) ? read(id) : Optional.empty();
+    }
+
+    public UploadSession append(String id, long offset, InputStream in) {
+        if (!validId(id)) {
+            throw new IllegalArgumentException("Upload session not found");
+        }
+        synchronized (lockFor(id)) {
+            var session = read(id).orElseThrow(() -> new IllegalArgumentException("Upload session not found"));
+            if (offset != session.offset()) {
+                throw new IllegalStateException("Upload offset mismatch, expected " + session.offset());
+            }
+            Path data = SESSIONS_ROOT.resolve(id).resolve(DATA_FILE);
+            long remaining = session.size() - offset;
+            long written = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+            try (ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(data, StandardOpenOption.WRITE)) {
+                target.position(offset);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    written += buffer.remaining();
+                    if (written > remaining) {
+                        target.truncate(offset);
+                        throw new IllegalArgumentException("Chunk runs past the declared size of " + session.size() + " bytes");
+                    }
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                target.force(false);
+            } catch (IOException ex) {
+                log.warn("Chunk for upload session {} interrupted at offset {}: {}", id, offset + written, ex.getMessage());
+            }
+            log.debug("Upload session {} advanced from {} to {}", id, offset, offset + written);
+            return read(id).orElseThrow();
+        }
+    }
+
+    public StoredFile complete(String id, StorageType type) {
+        synchronized (lockFor(id)) {
+            var session = find(id).orElseThrow(() -> new IllegalArgumentException("Upload session not found"));
+            if (session.offset() != session.size()) {
+                throw new IllegalStateException("Upload incomplete, expected " + session.size() + " bytes but have " + session.offset());
+            }
+            Path directory = SESSIONS_ROOT.resolve(id);
+            var stored = storageService.adopt(directory.resolve(DATA_FILE), session.filename(), type);
+            deleteDirectory(directory);
+            log.info("Completed upload session {} into {}", id, stored.path());
+            return stored;
+        }
+    }
+
+    public void abort(String id) {
+        if (!validId(id)) {
+            return;
+        }
+        synchronized (lockFor(id)) {
+            deleteDirectory(SESSIONS_ROOT.resolve(id));
+            log.info("Aborted upload session {}", id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${uploads.session.cleanup-interval-ms:600000}")
+    public void expire() {
+        if (!Files.isDirectory(SESSIONS_ROOT)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        int expired = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(SESSIONS_ROOT)) {
+            for (Path directory : sessions) {
+                String id = directory.getFileName().toString();
+                synchronized (lockFor(id)) {
+                    if (lastActivity(directory) < cutoff) {
+                        deleteDirectory(directory);
+                        expired++;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to sweep upload sessions: {}", ex.getMessage());
+        }
+        if (expired > 0) {
+            log.info("Expired {} idle upload sessions", expired);
+        }
+    }
+
+    private Optional<UploadSession> read(String id) {
+        Path directory = SESSIONS_ROOT.resolve(id);
+        Path metaFile = directory.resolve(META_FILE);
+        Path data = directory.resolve(DATA_FILE);
+        if (!Files.isRegularFile(metaFile) || !Files.isRegularFile(data)) {
+            return Optional.empty();
+        }
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            meta.load(reader);
+            return Optional.of(new UploadSession(id, meta.getProperty("username"), meta.getProperty("filename"),
+                    meta.getProperty("type"), meta.getProperty("description"), Long.parseLong(meta.getProperty("size")),
+                    Files.size(data), lastActivity(directory) + ttlMs));
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unreadable upload session {}: {}", id, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private long lastActivity(Path directory) throws IOException {
+        Path data = directory.resolve(DATA_FILE);
+        Path activity = Files.exists(data) ? data : directory;
+        return Files.getLastModifiedTime(activity).toMillis();
+    }
+
+    private boolean validId(String id) {
+        try {
+            return id != null && UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private Object lockFor(String id) {
+        return locks[Math.floorMod(id.hashCode(), locks.length)];
+    }
+
+    private void deleteDirectory(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not delete upload session {}: {}", directory, e.getMessage());
+        }
+    }
+}
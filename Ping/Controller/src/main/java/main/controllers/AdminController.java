@@ -3,8 +3,16 @@ package main.controllers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.dto.response.admin.AdminResponse;
+import main.dto.response.admin.ChatCacheMetricsResponse;
+import main.dto.response.admin.FeedMetricsResponse;
+import main.dto.response.admin.MediaGcMetricsResponse;
+import main.dto.response.admin.SearchIndexMetricsResponse;
 import main.interfaces.IUserService;
 import main.services.RoleService;
+import main.services.feed.FeedMetrics;
+import main.services.messages.RecentMessageCache;
+import main.services.search.MessageSearchIndex;
+import main.storage.MediaGcMetrics;
 import main.users.Enums.RoleType;
 import main.users.User;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +20,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("api/admin")
@@ -22,6 +31,10 @@ public class AdminController {
 
     private final IUserService userService;
     private final RoleService roleService;
+    private final FeedMetrics feedMetrics;
+    private final MediaGcMetrics mediaGcMetrics;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
 
     @GetMapping("/users/lastName")
     public ResponseEntity<?> findByLastName(@RequestParam("lastName") String lastName) {
@@ -177,4 +190,68 @@ public class AdminController {
             return ResponseEntity.internalServerError().body("Error: " + ex.getMessage());
         }
     }
+
+    @GetMapping("/metrics/feed")
+    public ResponseEntity<FeedMetricsResponse> feedMetrics() {
+        log.info("Admin request: feed fan-out metrics");
+        return ResponseEntity.ok(FeedMetricsResponse.builder()
+                .pushedPosts(feedMetrics.getPushedPosts())
+                .pulledPosts(feedMetrics.getPulledPosts())
+                .timelineWrites(feedMetrics.getTimelineWrites())
+                .pullMerges(feedMetrics.getPullMerges())
+                .timelineRebuilds(feedMetrics.getTimelineRebuilds())
+                .build());
+    }
+
+    @GetMapping("/metrics/media-gc")
+    public ResponseEntity<MediaGcMetricsResponse> mediaGcMetrics() {
+        log.info("Admin request: media GC metrics");
+        return ResponseEntity.ok(MediaGcMetricsResponse.builder()
+                .runs(mediaGcMetrics.getRuns())
+                .filesScanned(mediaGcMetrics.getFilesScanned())
+                .filesDeleted(mediaGcMetrics.getFilesDeleted())
+                .bytesReclaimed(mediaGcMetrics.getBytesReclaimed())
+                .lastRunAt(mediaGcMetrics.getLastRunAt())
+                .lastRunMillis(mediaGcMetrics.getLastRunMillis())
+                .build());
+    }
+
+    @GetMapping("/metrics/chat-cache")
+    public ResponseEntity<ChatCacheMetricsResponse> chatCacheMetrics() {
+        log.info("Admin request: recent message cache metrics");
+        long hits = recentMessageCache.getHits();
+        long misses = recentMessageCache.getMisses();
+        return ResponseEntity.ok(ChatCacheMetricsResponse.builder()
+                .hits(hits)
+                .misses(misses)
+                .hitRatio(hits + misses == 0 ? 0 : (double) hits / (hits + misses))
+                .evictions(recentMessageCache.getEvictions())
+                .conversations(recentMessageCache.getConversations())
+                .messages(recentMessageCache.getMessages())
+                .bytes(recentMessageCache.getBytes())
+                .build());
+    }
+
+    @GetMapping("/metrics/search")
+    public ResponseEntity<SearchIndexMetricsResponse> searchIndexMetrics() {
+        log.info("Admin request: message search index metrics");
+        return ResponseEntity.ok(SearchIndexMetricsResponse.builder()
+                .caughtUp(messageSearchIndex.isCaughtUp())
+                .rebuilding(messageSearchIndex.isRebuilding())
+                .segments(messageSearchIndex.getSegments())
+                .indexedMessages(messageSearchIndex.getIndexedMessages())
+                .bufferedMessages(messageSearchIndex.getBufferedMessages())
+                .tombstones(messageSearchIndex.getTombstones())
+                .bytes(messageSearchIndex.getBytes())
+                .watermark(messageSearchIndex.getWatermark())
+                .queries(messageSearchIndex.getQueries())
+                .build());
+    }
+
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Map<String, String>> rebuildSearchIndex() {
+        log.info("Admin request: rebuild message search index");
+        boolean queued = messageSearchIndex.rebuild();
+        return ResponseEntity.ok(Map.of("message", queued ? "Search index rebuild started" : "Search index rebuild already running or disabled"));
+    }
 }
@@ -10,6 +10,7 @@ import main.interfaces.IUserService;
 import main.jwt.CustomUserDetails;
 import main.jwt.JwtService;
 import main.sms.SmsSend;
+import main.storage.MediaDerivativeService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -140,7 +141,8 @@ public class AuthController {
             log.info("Fetched user: {} {}", user.getFirstName(), user.getLastName());
             String[] roles = user.getRoles().stream().map(role -> role.getName().name()).toArray(String[]::new);
             log.debug("User roles: {}", (Object) roles);
-            var meResponse = new MeResponse(user.getId(), user.getUsername(), user.getLastName(), user.getFirstName(), user.getPhone(), user.getBio(), user.getProfilePicture(), roles);
+            var meResponse = new MeResponse(user.getId(), user.getUsername(), user.getLastName(), user.getFirstName(), user.getPhone(), user.getBio(), user.getProfilePicture(),
+                    MediaDerivativeService.variantUrls(user.getProfilePicture(), user.getProfilePictureVariants()), roles);
             log.info("Returning user profile for '{}'", user.getUsername());
             return ResponseEntity.ok(meResponse);
         } catch (Exception ex) {
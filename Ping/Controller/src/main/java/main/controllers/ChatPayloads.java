@@ -0,0 +1,49 @@
+package main.controllers;
+
+import main.dto.response.messages.ChatResponse;
+import main.dto.response.messages.ConversationSyncResponse;
+import main.dto.response.messages.DetailsConversations;
+import main.dto.response.messages.ReadReceipt;
+import main.dto.response.messages.SyncResponse;
+import main.messages.Message;
+import main.services.messages.ConversationDelta;
+
+import java.util.List;
+
+final class ChatPayloads {
+
+    private ChatPayloads() {
+    }
+
+    static ChatResponse chatResponse(Long conversationId, Message message) {
+        return ChatResponse.builder()
+                .messageId(message.getId())
+                .conversationId(conversationId)
+                .seq(message.getSeq())
+                .clientMessageId(message.getClientMessageId())
+                .text(message.getText())
+                .pictureProfile(message.getUser().getProfilePicture())
+                .username(message.getUser().getUsername())
+                .build();
+    }
+
+    static ReadReceipt readReceipt(Long conversationId, String username, Long lastReadSeq) {
+        return ReadReceipt.builder().conversationId(conversationId).username(username).lastReadSeq(lastReadSeq).build();
+    }
+
+    static SyncResponse syncResponse(List<ConversationDelta> deltas) {
+        return SyncResponse.builder()
+                .conversations(deltas.stream().map(delta -> ConversationSyncResponse.builder()
+                        .conversationId(delta.conversationId())
+                        .lastSeq(delta.lastSeq())
+                        .tooFarBehind(delta.tooFarBehind())
+                        .messages(delta.messages().stream().map(m -> DetailsConversations.builder()
+                                .conversationId(delta.conversationId())
+                                .text(m.getText())
+                                .sender(m.getUser())
+                                .seq(m.getSeq())
+                                .id(m.getId()).build()).toList())
+                        .build()).toList())
+                .build();
+    }
+}
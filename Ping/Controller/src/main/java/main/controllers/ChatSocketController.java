@@ -0,0 +1,94 @@
+package main.controllers;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.dto.request.messages.ChatSendRequest;
+import main.dto.request.messages.ReadRequest;
+import main.dto.request.messages.SyncRequest;
+import main.dto.request.messages.TypingRequest;
+import main.dto.response.messages.ChatAck;
+import main.dto.response.messages.SyncResponse;
+import main.interfaces.IMessageService;
+import main.jwt.StompAuthChannelInterceptor;
+import main.presence.TypingCoalescer;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class ChatSocketController {
+
+    private final IMessageService messagesService;
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final TypingCoalescer typingCoalescer;
+
+    @MessageMapping("/chat.send")
+    @SendToUser(value = "/queue/chat.ack", broadcast = false)
+    public ChatAck send(@Payload ChatSendRequest request, Principal principal) {
+        var ack = ChatAck.builder().clientMessageId(request.getClientMessageId()).conversationId(request.getConversationId());
+        if (principal == null) {
+            return ack.error("Unauthenticated").build();
+        }
+        if (request.getConversationId() == null || request.getClientMessageId() == null) {
+            return ack.error("conversationId and clientMessageId are required").build();
+        }
+        try {
+            var sent = messagesService.sendMessage(request.getConversationId(), principal.getName(), request.getText(), request.getClientMessageId());
+            var message = sent.message();
+            if (!sent.duplicate()) {
+                simpMessagingTemplate.convertAndSend("/topic/conversations/" + request.getConversationId(), ChatPayloads.chatResponse(request.getConversationId(), message));
+            }
+            log.debug("Acknowledged message '{}' from '{}' as ID {}", request.getClientMessageId(), principal.getName(), message.getId());
+            return ack.messageId(message.getId()).seq(message.getSeq()).createdAt(message.getCreatedAt()).duplicate(sent.duplicate()).build();
+        } catch (Exception ex) {
+            log.error("Failed to send STOMP message '{}' from '{}': {}", request.getClientMessageId(), principal.getName(), ex.getMessage());
+            return ack.error(ex.getMessage()).build();
+        }
+    }
+
+    @MessageMapping("/chat.read")
+    public void read(@Payload ReadRequest request, Principal principal) {
+        if (principal == null || request.getConversationId() == null) {
+            return;
+        }
+        try {
+            messagesService.markConversationRead(request.getConversationId(), principal.getName(), request.getSeq()).ifPresent(lastReadSeq ->
+                    simpMessagingTemplate.convertAndSend("/topic/conversations/" + request.getConversationId() + "/read",
+                            ChatPayloads.readReceipt(request.getConversationId(), principal.getName(), lastReadSeq)));
+        } catch (Exception ex) {
+            log.warn("Ignored read receipt from '{}' for conversation {}: {}", principal.getName(), request.getConversationId(), ex.getMessage());
+        }
+    }
+
+    @MessageMapping("/chat.typing")
+    public void typing(@Payload TypingRequest request, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        var sessionAttributes = headerAccessor.getSessionAttributes();
+        var userId = sessionAttributes == null ? null : sessionAttributes.get(StompAuthChannelInterceptor.USER_ID_ATTRIBUTE);
+        if (principal == null || request.getConversationId() == null || !(userId instanceof Long id)) {
+            return;
+        }
+        typingCoalescer.typing(request.getConversationId(), principal.getName(), id, request.isTyping());
+    }
+
+    @MessageMapping("/chat.sync")
+    @SendToUser(value = "/queue/chat.sync", broadcast = false)
+    public SyncResponse sync(@Payload SyncRequest request, Principal principal) {
+        if (principal == null) {
+            return SyncResponse.builder().messageResponse("Unauthenticated").build();
+        }
+        log.info("STOMP sync requested by '{}'", principal.getName());
+        try {
+            return ChatPayloads.syncResponse(messagesService.syncConversations(principal.getName(), request.getLastSeen()));
+        } catch (Exception ex) {
+            log.error("Failed to sync conversations for '{}': {}", principal.getName(), ex.getMessage());
+            return SyncResponse.builder().messageResponse(ex.getMessage()).build();
+        }
+    }
+}
@@ -2,18 +2,23 @@ package main.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import main.dto.request.friends.PresenceRequest;
 import main.dto.response.friends.FriendshipResponse;
+import main.dto.response.friends.PresenceResponse;
 import main.friends.Enums.FriendshipRequestType;
 import main.friends.Friendship;
 import main.interfaces.IFriendsService;
 import main.kafka.KafkaProducer;
 import main.kafka.appevents.FriendshipRequestEvent;
+import main.presence.PresenceRegistry;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Slf4j
@@ -23,9 +28,12 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public class FriendsController {
 
+    private static final int MAX_PRESENCE_USERNAMES = 500;
+
     private final IFriendsService friendsService;
     private final KafkaProducer kafkaProducer;
     private final SimpMessagingTemplate simpMessagingTemplate;
+    private final PresenceRegistry presenceRegistry;
 
     @PostMapping("/send")
     public ResponseEntity<FriendshipResponse> send(@RequestParam("sender") String sender, @RequestParam("receiver") String receiver) {
@@ -151,4 +159,16 @@ public class FriendsController {
             return ResponseEntity.internalServerError().body(FriendshipResponse.builder().message(ex.getMessage()).build());
         }
     }
+
+    @PostMapping("/presence")
+    public ResponseEntity<PresenceResponse> presence(@RequestBody PresenceRequest request) {
+        var usernames = request.getUsernames() == null ? List.<String>of() : request.getUsernames();
+        if (usernames.size() > MAX_PRESENCE_USERNAMES) {
+            return ResponseEntity.badRequest().body(PresenceResponse.builder().message("At most " + MAX_PRESENCE_USERNAMES + " usernames per request").build());
+        }
+        Map<String, String> statuses = new LinkedHashMap<>();
+        presenceRegistry.statuses(usernames).forEach((username, status) -> statuses.put(username, status.toString()));
+        log.debug("Resolved presence for {} users", statuses.size());
+        return ResponseEntity.ok(PresenceResponse.builder().statuses(statuses).build());
+    }
 }
@@ -0,0 +1,171 @@
+package main.controllers;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.storage.MediaDerivativeService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class MediaController {
+
+    private static final String UPLOADS_PREFIX = "/uploads/";
+    private static final Path UPLOADS_ROOT = Paths.get("uploads").toAbsolutePath().normalize();
+    private static final Pattern IMMUTABLE_NAME = Pattern.compile("^([0-9a-f]{64}|[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}_).*");
+    private static final Pattern VARIANT_NAME = Pattern.compile(".+_w\\d+\\.(jpg|png)$");
+    private static final String IMMUTABLE_CACHE = "public, max-age=31536000, immutable";
+    private static final String DEFAULT_CACHE = "public, max-age=3600";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final MediaDerivativeService mediaDerivativeService;
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(@RequestParam(value = "w", required = false) Integer width,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = resolve(request, width);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long size = Files.size(file);
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        String name = file.getFileName().toString();
+        boolean variantFallback = width != null && width > 0 && !VARIANT_NAME.matcher(name).matches();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE_NAME.matcher(name).matches() && !variantFallback ? IMMUTABLE_CACHE : DEFAULT_CACHE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+            out.flush();
+        } catch (IOException ex) {
+            log.debug("Client aborted media transfer of {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private Path resolve(HttpServletRequest request, Integer width) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        if (!uri.startsWith(UPLOADS_PREFIX)) {
+            return null;
+        }
+        String relative = URLDecoder.decode(uri.substring(UPLOADS_PREFIX.length()), StandardCharsets.UTF_8);
+        Path file = UPLOADS_ROOT.resolve(relative).normalize();
+        if (!file.startsWith(UPLOADS_ROOT) || file.getFileName().toString().endsWith(".part")
+                || file.startsWith(UPLOADS_ROOT.resolve("tmp")) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        if (width != null && width > 0) {
+            return mediaDerivativeService.variantFor("uploads/" + UPLOADS_ROOT.relativize(file).toString().replace('\\', '/'), width)
+                    .map(variant -> variant.toAbsolutePath().normalize())
+                    .orElse(file);
+        }
+        return file;
+    }
+
+    private long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(size - 1, Long.parseLong(spec.substring(dash + 1)));
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException ex) {
+            return new long[0];
+        }
+    }
+}
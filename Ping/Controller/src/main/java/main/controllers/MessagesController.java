@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.dto.request.messages.CreateGroupRequest;
 import main.dto.request.messages.SendMessageRequest;
+import main.dto.request.messages.SyncRequest;
 import main.dto.response.messages.*;
 import main.interfaces.IMessageService;
 import main.messages.Conversation;
@@ -55,22 +56,42 @@ public class MessagesController {
         }
     }
 
+    @PostMapping("/group/{id}/members/{username}")
+    public ResponseEntity<Map<String, String>> addMember(@PathVariable("id") Long conversationId, @PathVariable("username") String username) {
+        log.info("Adding '{}' to conversation ID {}", username, conversationId);
+        try {
+            messagesService.addParticipant(conversationId, username);
+            return ResponseEntity.ok(Map.of("message", "Member added successfully"));
+        } catch (Exception ex) {
+            log.error("Failed to add '{}' to conversation {}: {}", username, conversationId, ex.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("message", "Member could not be added"));
+        }
+    }
+
+    @DeleteMapping("/group/{id}/members/{username}")
+    public ResponseEntity<Map<String, String>> removeMember(@PathVariable("id") Long conversationId, @PathVariable("username") String username) {
+        log.info("Removing '{}' from conversation ID {}", username, conversationId);
+        try {
+            messagesService.removeParticipant(conversationId, username);
+            return ResponseEntity.ok(Map.of("message", "Member removed successfully"));
+        } catch (Exception ex) {
+            log.error("Failed to remove '{}' from conversation {}: {}", username, conversationId, ex.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("message", "Member could not be removed"));
+        }
+    }
+
     @PostMapping("conversation/{id}")
     public ResponseEntity<?> sendMessage(@PathVariable("id") Long conversationId, @RequestParam("username") String username, @RequestBody SendMessageRequest request) {
         log.info("Sending message in conversation ID {} from user '{}'", conversationId, username);
         try {
-            var message = messagesService.sendMessage(conversationId, username, request.getText());
+            var sent = messagesService.sendMessage(conversationId, username, request.getText(), request.getClientMessageId());
+            var message = sent.message();
             log.debug("Message sent with ID {}", message.getId());
-            SendMessageResponse messageSend = SendMessageResponse.builder().user(message.getUser()).text(message.getText()).id(message.getId()).conversationId(conversationId).messageResponse("Message successfully created").build();
-
-            ChatResponse payload = ChatResponse.builder()
-                    .messageId(message.getId())
-                    .conversationId(conversationId)
-                    .text(message.getText())
-                    .pictureProfile(message.getUser().getProfilePicture())
-                    .username(message.getUser().getUsername())
-                    .build();
-            simpMessagingTemplate.convertAndSend("/topic/conversations/" + conversationId, payload);
+            SendMessageResponse messageSend = SendMessageResponse.builder().user(message.getUser()).text(message.getText()).id(message.getId()).seq(message.getSeq()).conversationId(conversationId).messageResponse("Message successfully created").build();
+
+            if (!sent.duplicate()) {
+                simpMessagingTemplate.convertAndSend("/topic/conversations/" + conversationId, ChatPayloads.chatResponse(conversationId, message));
+            }
             return ResponseEntity.ok(messageSend);
         } catch (Exception ex) {
             log.error("Failed to send message: {}", ex.getMessage());
@@ -78,6 +99,17 @@ public class MessagesController {
         }
     }
 
+    @PostMapping("/sync")
+    public ResponseEntity<?> sync(@RequestParam("username") String username, @RequestBody SyncRequest request) {
+        log.info("Syncing conversations for user '{}'", username);
+        try {
+            return ResponseEntity.ok(ChatPayloads.syncResponse(messagesService.syncConversations(username, request.getLastSeen())));
+        } catch (Exception ex) {
+            log.error("Failed to sync conversations for '{}': {}", username, ex.getMessage());
+            return ResponseEntity.internalServerError().body(SyncResponse.builder().messageResponse(ex.getMessage()).build());
+        }
+    }
+
     @DeleteMapping("/conversation/{id}")
     public ResponseEntity<Map<String, String>> deleteConversation(@PathVariable("id") Long conversationId) {
         log.info("Deleting conversation with ID {}", conversationId);
@@ -92,15 +124,19 @@ public class MessagesController {
     }
 
     @GetMapping("/conversation/{id}/details")
-    public ResponseEntity<?> allDetailsConversation(@PathVariable("id") Long conversationId) {
-        log.info("Fetching messages for conversation ID {}", conversationId);
+    public ResponseEntity<?> allDetailsConversation(@PathVariable("id") Long conversationId,
+                                                    @RequestParam(value = "before", required = false) Long before,
+                                                    @RequestParam(value = "after", required = false) Long after,
+                                                    @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Fetching messages for conversation ID {}, before={}, after={}, limit={}", conversationId, before, after, limit);
         try {
-            List<Message> list = messagesService.getMessagesConversationId(conversationId);
+            List<Message> list = messagesService.getMessagesConversationId(conversationId, before, after, limit);
             List<DetailsConversations> messagesDetails = list.stream()
                     .map(m -> DetailsConversations.builder()
                             .conversationId(conversationId)
                             .text(m.getText())
                             .sender(m.getUser())
+                            .seq(m.getSeq())
                             .id(m.getId()).build()).toList();
             log.debug("Found {} messages", list.size());
             return ResponseEntity.ok(messagesDetails);
@@ -110,6 +146,67 @@ public class MessagesController {
         }
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<SearchResponse> search(@RequestParam("username") String username,
+                                                 @RequestParam("q") String query,
+                                                 @RequestParam(value = "beforeId", required = false) Long beforeId,
+                                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Searching messages of user '{}' for '{}', beforeId={}, limit={}", username, query, beforeId, limit);
+        try {
+            List<Message> messages = messagesService.searchMessages(username, query, beforeId, limit);
+            return ResponseEntity.ok(SearchResponse.builder()
+                    .messages(messages.stream().map(m -> ChatPayloads.chatResponse(m.getConversation().getId(), m)).toList())
+                    .nextBeforeId(messages.isEmpty() ? null : messages.get(messages.size() - 1).getId())
+                    .build());
+        } catch (Exception ex) {
+            log.error("Failed to search messages for '{}': {}", username, ex.getMessage());
+            return ResponseEntity.internalServerError().body(SearchResponse.builder().messageResponse(ex.getMessage()).build());
+        }
+    }
+
+    @GetMapping("/inbox")
+    public ResponseEntity<?> inbox(@RequestParam("username") String username,
+                                   @RequestParam(value = "before", required = false) Long before,
+                                   @RequestParam(value = "beforeId", required = false) Long beforeId,
+                                   @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Fetching inbox for user '{}', before={}, beforeId={}, limit={}", username, before, beforeId, limit);
+        try {
+            List<InboxResponse> inbox = messagesService.getInbox(username, before, beforeId, limit).stream()
+                    .map(entry -> InboxResponse.builder()
+                            .conversationId(entry.conversationId())
+                            .name(entry.name())
+                            .conversationType(entry.conversationType() == null ? null : entry.conversationType().toString())
+                            .peerUsername(entry.peerUsername())
+                            .lastMessageText(entry.lastMessageText())
+                            .lastMessageSender(entry.lastMessageSender())
+                            .lastActivityAt(entry.lastActivityAt())
+                            .lastSeq(entry.lastSeq())
+                            .lastReadSeq(entry.lastReadSeq())
+                            .unreadCount(entry.unreadCount())
+                            .build())
+                    .toList();
+            log.debug("Found {} inbox entries", inbox.size());
+            return ResponseEntity.ok(inbox);
+        } catch (Exception ex) {
+            log.error("Failed to fetch inbox for '{}': {}", username, ex.getMessage());
+            return ResponseEntity.internalServerError().body(InboxResponse.builder().messageResponse(ex.getMessage()).build());
+        }
+    }
+
+    @PostMapping("/conversation/{id}/read")
+    public ResponseEntity<Map<String, String>> markRead(@PathVariable("id") Long conversationId, @RequestParam("username") String username,
+                                                        @RequestParam(value = "seq", required = false) Long seq) {
+        log.info("Marking conversation ID {} read for user '{}' up to seq {}", conversationId, username, seq);
+        try {
+            messagesService.markConversationRead(conversationId, username, seq).ifPresent(lastReadSeq ->
+                    simpMessagingTemplate.convertAndSend("/topic/conversations/" + conversationId + "/read", ChatPayloads.readReceipt(conversationId, username, lastReadSeq)));
+            return ResponseEntity.ok(Map.of("message", "Conversation marked as read"));
+        } catch (Exception ex) {
+            log.error("Failed to mark conversation {} read: {}", conversationId, ex.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("message", "Conversation could not be marked as read"));
+        }
+    }
+
     @GetMapping("/conversation/user")
     public ResponseEntity<?> allConversations(@RequestParam("username") String username) {
         log.info("Fetching all conversations for user '{}'", username);
@@ -1,34 +1,48 @@
 package main.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.dto.request.posts.AddCommentRequest;
-import main.dto.request.posts.DeletePostRequest;
 import main.dto.response.posts.comment.AddCommentResponse;
 import main.dto.response.posts.like.LikeResponse;
 import main.dto.response.posts.post.AddPostResponse;
 import main.dto.response.posts.post.FeedPostsResponse;
 import main.dto.response.posts.post.GetUserPostsResponse;
+import main.dto.response.posts.post.UploadSessionResponse;
 import main.dto.response.posts.comment.AllCommentsResponse;
 import main.dto.response.posts.comment.DeleteCommentResponse;
 import main.dto.response.posts.post.DeletePostResponse;
 import main.interfaces.IPostService;
+import main.jwt.CustomUserDetails;
 import main.kafka.appevents.CommentAddEvent;
 import main.kafka.appevents.PostAddEvent;
 import main.kafka.KafkaProducer;
 import main.posts.Comment;
+import main.posts.CommentView;
 import main.posts.Enums.ContentType;
+import main.posts.Enums.FeedMode;
 import main.posts.Like;
 import main.posts.Post;
+import main.posts.PostView;
 import main.storage.Enums.StorageType;
+import main.storage.MediaDerivativeService;
 import main.storage.StorageService;
+import main.storage.StoredFile;
+import main.storage.UploadSession;
+import main.storage.UploadSessionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -37,8 +51,12 @@ import java.util.List;
 @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
 public class PostsController {
 
+    private static final int MAX_BATCH_IDS = 100;
+
     private final IPostService postService;
     private final StorageService storageService;
+    private final UploadSessionService uploadSessionService;
+    private final MediaDerivativeService mediaDerivativeService;
     private final KafkaProducer kafkaProducer;
     private final SimpMessagingTemplate simpMessagingTemplate;
 
@@ -66,18 +84,14 @@ public class PostsController {
     public ResponseEntity<LikeResponse> likePost(@PathVariable("idPost") Long postId, @PathVariable("idUser") Long userId) {
         try {
             log.info("Attempting to like post. userId={}, postId={}", userId, postId);
-            Like likeAdded = postService.addLike(userId, postId);
-            if (likeAdded == null) {
-                log.warn("Like could not be added for userId={}, postId={}", userId, postId);
-                throw new IllegalArgumentException("Like could not be added");
-            }
-            log.info("Like successfully added. likeId={}, userId={}, postId={}", likeAdded.getId(), userId, postId);
+            boolean added = postService.addLike(userId, postId);
+            log.info("Like request handled. changed={}, userId={}, postId={}", added, userId, postId);
 
             return ResponseEntity.ok(LikeResponse.builder()
                     .userId(userId)
                     .postId(postId)
-                    .id(likeAdded.getId())
-                    .message("Like added with success")
+                    .changed(added)
+                    .message(added ? "Like added with success" : "Already liked")
                     .build());
 
         } catch (Exception ex) {
@@ -90,17 +104,13 @@ public class PostsController {
     public ResponseEntity<?> dislikePost(@PathVariable("idPost") Long postId, @PathVariable("idUser") Long userId) {
         try {
             log.info("Attempting to dislike post. userId={}, postId={}", userId, postId);
-            Like dislikedPost = postService.dislike(postId, userId);
-            if (dislikedPost == null) {
-                log.warn("Dislike operation failed. userId={}, postId={}", userId, postId);
-                throw new IllegalArgumentException("Dislike could not be realized");
-            }
-            log.info("Post successfully disliked. likeId={}, userId={}, postId={}", dislikedPost.getId(), userId, postId);
+            boolean removed = postService.dislike(postId, userId);
+            log.info("Dislike request handled. changed={}, userId={}, postId={}", removed, userId, postId);
             return ResponseEntity.ok(LikeResponse.builder()
                     .userId(userId)
                     .postId(postId)
-                    .id(dislikedPost.getId())
-                    .message("Dislike added with success")
+                    .changed(removed)
+                    .message(removed ? "Dislike added with success" : "Not liked yet")
                     .build());
         } catch (Exception ex) {
             log.error("Error during dislike operation. userId={}, postId={}, error={}", userId, postId, ex.getMessage(), ex);
@@ -121,18 +131,38 @@ public class PostsController {
         }
     }
 
+    @GetMapping("/likes/counts")
+    public ResponseEntity<?> countLikesBatch(@RequestParam("ids") List<Long> postIds) {
+        try {
+            log.info("Counting likes for {} posts", postIds.size());
+            if (postIds.size() > MAX_BATCH_IDS) {
+                log.warn("Like count batch of {} posts exceeds limit of {}", postIds.size(), MAX_BATCH_IDS);
+                return ResponseEntity.badRequest().body(Map.of("message", "At most " + MAX_BATCH_IDS + " post ids per request"));
+            }
+            Map<Long, Long> counts = postService.getCountLikes(postIds);
+            return ResponseEntity.ok(counts);
+        } catch (Exception ex) {
+            log.error("Failed to count likes for posts {}. Reason: {}", postIds, ex.getMessage(), ex);
+            return ResponseEntity.internalServerError().body(Map.of("message", String.valueOf(ex.getMessage())));
+        }
+    }
+
     @GetMapping("/{postId}/comment")
-    public ResponseEntity<?> getAllCommentsPerPost(@PathVariable("postId") Long postId) {
+    public ResponseEntity<?> getAllCommentsPerPost(@PathVariable("postId") Long postId,
+                                                   @RequestParam(value = "before", required = false) Long before,
+                                                   @RequestParam(value = "beforeId", required = false) Long beforeId,
+                                                   @RequestParam(value = "limit", required = false) Integer limit) {
         try {
-            log.info("Fetching all comments for post ID '{}'", postId);
-            List<Comment> comments = postService.getCommentsPerPost(postId);
+            log.info("Fetching comments for post ID '{}', before={}, beforeId={}, limit={}", postId, before, beforeId, limit);
+            List<CommentView> comments = postService.getCommentsPerPost(postId, before, beforeId, limit);
             log.info("Found {} comments for post ID '{}'", comments.size(), postId);
             List<AllCommentsResponse> userComments = comments.stream().map(c ->
                     AllCommentsResponse.builder()
-                            .id(c.getId())
-                            .username(c.getUser().getUsername())
-                            .profilePicture(c.getUser().getProfilePicture())
-                            .text(c.getText())
+                            .id(c.id())
+                            .username(c.username())
+                            .profilePicture(c.profilePicture())
+                            .text(c.text())
+                            .createdAt(c.createdAt())
                             .build()).toList();
             log.info("Mapped comments to DTO for post ID '{}'", postId);
             return ResponseEntity.ok(userComments);
@@ -218,42 +248,121 @@ public class PostsController {
             }
             log.info("Storing media file for user '{}'", username);
             var urlMedia = storageService.store(file, StorageType.POSTS);
-            log.info("Creating new post for user '{}'", username);
-            var postAdded = postService.createPost(username, urlMedia, description, contentType);
-            log.info("Post created successfully: ID={}, user='{}'", postAdded.getId(), username);
-
-            kafkaProducer.sendPostCreated(PostAddEvent.builder()
-                    .sender(postAdded.getUser().getUsername())
-                    .senderPicture(postAdded.getUser().getProfilePicture())
-                    .description(postAdded.getDescription())
-                    .mediaType(postAdded.getMediaUrl())
-                    .build());
-
-            return ResponseEntity.ok(AddPostResponse.builder().id(postAdded.getId())
-                    .mediaUrl(postAdded.getMediaUrl())
-                    .contentType(type)
-                    .description(postAdded.getDescription())
-                    .profilePicture(postAdded.getUser().getProfilePicture())
-                    .username(postAdded.getUser().getUsername()).message("Post created with success").build());
+            return ResponseEntity.ok(publishPost(username, urlMedia, description, contentType));
         } catch (Exception ex) {
             log.error("Failed to create post for user '{}'. Reason: {}", username, ex.getMessage(), ex);
             return ResponseEntity.internalServerError().body(AddPostResponse.builder().message(ex.getMessage()).build());
         }
     }
 
-    @DeleteMapping("/delete/{id}")
-    public ResponseEntity<DeletePostResponse> deletePost(@PathVariable("id") Long postId, @RequestBody DeletePostRequest request) {
+    @PostMapping(value = "/{username}/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<AddPostResponse> addPostStream(@PathVariable("username") String username,
+                                                         @RequestParam("type") String type,
+                                                         @RequestParam("filename") String filename,
+                                                         @RequestParam(value = "description", required = false) String description,
+                                                         HttpServletRequest request) {
         try {
-            String urlFile = request.getMediaUrl();
-            log.info("Attempting to delete post with ID '{}' and mediaUrl '{}'", postId, urlFile);
-            if (urlFile == null || urlFile.isBlank()) {
-                log.warn("Media URL is null or empty for post ID '{}'", postId);
-                throw new IllegalArgumentException("Url file is null or empty! Retry!");
+            ContentType contentType;
+            try {
+                contentType = ContentType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid content type '{}' received from user '{}'", type, username);
+                return ResponseEntity.badRequest().body(AddPostResponse.builder().message("Type is invalid, this should be image, video, or text!").build());
+            }
+            log.info("Streaming media upload for user '{}', declared length={}", username, request.getContentLengthLong());
+            StoredFile stored = storageService.store(request.getInputStream(), filename, StorageType.POSTS);
+            return ResponseEntity.ok(publishPost(username, stored.path(), description, contentType));
+        } catch (IllegalArgumentException ex) {
+            log.warn("Rejected streamed upload for user '{}': {}", username, ex.getMessage());
+            return ResponseEntity.badRequest().body(AddPostResponse.builder().message(ex.getMessage()).build());
+        } catch (Exception ex) {
+            log.error("Failed to create streamed post for user '{}'. Reason: {}", username, ex.getMessage(), ex);
+            return ResponseEntity.internalServerError().body(AddPostResponse.builder().message(ex.getMessage()).build());
+        }
+    }
+
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSessionResponse> createUpload(@RequestParam("username") String username,
+                                                              @RequestParam("type") String type,
+                                                              @RequestParam("filename") String filename,
+                                                              @RequestParam("size") Long size,
+                                                              @RequestParam(value = "description", required = false) String description) {
+        try {
+            try {
+                ContentType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid content type '{}' received from user '{}'", type, username);
+                return ResponseEntity.badRequest().body(UploadSessionResponse.builder().message("Type is invalid, this should be image, video, or text!").build());
             }
-            log.info("Deleting media file from storage for post ID '{}'", postId);
-            storageService.delete(urlFile);
+            log.info("Creating upload session for user '{}', size={}", username, size);
+            var session = uploadSessionService.create(username, filename, type.toUpperCase(), description, size);
+            return ResponseEntity.ok(toUploadResponse(session, "Upload session created"));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(UploadSessionResponse.builder().message(ex.getMessage()).build());
+        } catch (Exception ex) {
+            log.error("Failed to create upload session for user '{}'. Reason: {}", username, ex.getMessage(), ex);
+            return ResponseEntity.internalServerError().body(UploadSessionResponse.builder().message(ex.getMessage()).build());
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionResponse> getUpload(@PathVariable("uploadId") String uploadId) {
+        return uploadSessionService.find(uploadId)
+                .map(session -> ResponseEntity.ok(toUploadResponse(session, "")))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(UploadSessionResponse.builder().message("Upload session not found").build()));
+    }
+
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> uploadChunk(@PathVariable("uploadId") String uploadId,
+                                                             @RequestParam("offset") Long offset,
+                                                             HttpServletRequest request) {
+        try {
+            var session = uploadSessionService.append(uploadId, offset, request.getInputStream());
+            return ResponseEntity.ok(toUploadResponse(session, "Chunk stored"));
+        } catch (IllegalStateException ex) {
+            log.info("Rejected chunk for upload {} at offset {}: {}", uploadId, offset, ex.getMessage());
+            var current = uploadSessionService.find(uploadId).map(session -> toUploadResponse(session, ex.getMessage()))
+                    .orElseGet(() -> UploadSessionResponse.builder().message(ex.getMessage()).build());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(current);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(UploadSessionResponse.builder().uploadId(uploadId).message(ex.getMessage()).build());
+        } catch (Exception ex) {
+            log.error("Failed to store chunk for upload {}. Reason: {}", uploadId, ex.getMessage(), ex);
+            return ResponseEntity.internalServerError().body(UploadSessionResponse.builder().uploadId(uploadId).message(ex.getMessage()).build());
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<AddPostResponse> completeUpload(@PathVariable("uploadId") String uploadId) {
+        try {
+            var session = uploadSessionService.find(uploadId)
+                    .orElseThrow(() -> new IllegalArgumentException("Upload session not found"));
+            log.info("Completing upload session {} for user '{}'", uploadId, session.username());
+            StoredFile stored = uploadSessionService.complete(uploadId, StorageType.POSTS);
+            return ResponseEntity.ok(publishPost(session.username(), stored.path(), session.description(),
+                    ContentType.valueOf(session.type())));
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            log.warn("Cannot complete upload {}: {}", uploadId, ex.getMessage());
+            return ResponseEntity.badRequest().body(AddPostResponse.builder().message(ex.getMessage()).build());
+        } catch (Exception ex) {
+            log.error("Failed to complete upload {}. Reason: {}", uploadId, ex.getMessage(), ex);
+            return ResponseEntity.internalServerError().body(AddPostResponse.builder().message(ex.getMessage()).build());
+        }
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionResponse> abortUpload(@PathVariable("uploadId") String uploadId) {
+        uploadSessionService.abort(uploadId);
+        return ResponseEntity.ok(UploadSessionResponse.builder().uploadId(uploadId).message("Upload session aborted").build());
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public ResponseEntity<DeletePostResponse> deletePost(@PathVariable("id") Long postId) {
+        try {
             log.info("Deleting post from database with ID '{}'", postId);
             Post postDeleted = postService.deletePost(postId);
+            log.info("Releasing media file from storage for post ID '{}'", postId);
+            storageService.delete(postDeleted.getMediaUrl());
             log.info("Post deleted successfully with ID '{}'", postDeleted.getId());
             return ResponseEntity.ok(DeletePostResponse.builder().id(postDeleted.getId())
                     .mediaUrl(postDeleted.getMediaUrl())
@@ -267,18 +376,24 @@ public class PostsController {
     }
 
     @GetMapping("/user")
-    public ResponseEntity<?> getPosts(@RequestParam("username") String username) {
+    public ResponseEntity<?> getPosts(@RequestParam("username") String username,
+                                      @AuthenticationPrincipal CustomUserDetails viewer) {
         try {
             log.info("Fetching posts for user '{}'", username);
-            List<Post> listPosts = postService.getUserPosts(username);
+            List<PostView> listPosts = postService.getUserPosts(username);
+            Set<Long> liked = likedByViewer(viewer, listPosts);
             List<GetUserPostsResponse> getUserPosts = listPosts.stream().map(p ->
                             GetUserPostsResponse.builder()
-                                    .id(p.getId())
-                                    .mediaUrl(p.getMediaUrl())
-                                    .contentType(p.getContentType().toString())
-                                    .description(p.getDescription())
-                                    .profilePicture(p.getUser().getProfilePicture())
-                                    .username(p.getUser().getUsername())
+                                    .id(p.id())
+                                    .mediaUrl(p.mediaUrl())
+                                    .contentType(p.contentType().toString())
+                                    .mediaVariants(MediaDerivativeService.variantUrls(p.mediaUrl(), p.mediaVariants()))
+                                    .description(p.description())
+                                    .profilePicture(p.profilePicture())
+                                    .profilePictureVariants(MediaDerivativeService.variantUrls(p.profilePicture(), p.profilePictureVariants()))
+                                    .username(p.username())
+                                    .commentCount(p.commentCount())
+                                    .likedByMe(liked.contains(p.id()))
                                     .build())
                     .toList();
             log.info("Returning post DTO list for user '{}'", username);
@@ -290,18 +405,40 @@ public class PostsController {
     }
 
     @GetMapping("/feed")
-    public ResponseEntity<?> getFeedPosts(@RequestParam("username") String username) {
+    public ResponseEntity<?> getFeedPosts(@RequestParam("username") String username,
+                                          @RequestParam(value = "before", required = false) Long before,
+                                          @RequestParam(value = "limit", required = false) Integer limit,
+                                          @RequestParam(value = "mode", required = false) String mode,
+                                          @AuthenticationPrincipal CustomUserDetails viewer) {
         try {
-            log.info("Fetching feed for user '{}'", username);
-            List<Post> listPosts = postService.getFeed(username);
+            FeedMode feedMode;
+            try {
+                feedMode = mode == null ? FeedMode.LATEST : FeedMode.valueOf(mode.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid feed mode '{}' received from user '{}'", mode, username);
+                return ResponseEntity.badRequest().body(FeedPostsResponse.builder().message("Mode is invalid, this should be latest or ranked!").build());
+            }
+            if (feedMode == FeedMode.RANKED && before != null) {
+                log.warn("Cursor 'before' sent with ranked feed mode by user '{}'", username);
+                return ResponseEntity.badRequest().body(FeedPostsResponse.builder().message("Ranked feed has no cursor, omit before or use mode=latest").build());
+            }
+            log.info("Fetching {} feed for user '{}', before={}, limit={}", feedMode, username, before, limit);
+            List<PostView> listPosts = feedMode == FeedMode.RANKED
+                    ? postService.getRankedFeed(username, limit)
+                    : postService.getFeed(username, before, limit);
+            Set<Long> liked = likedByViewer(viewer, listPosts);
             List<FeedPostsResponse> getUserPosts = listPosts.stream().map(p ->
                             FeedPostsResponse.builder()
-                                    .id(p.getId())
-                                    .mediaUrl(p.getMediaUrl())
-                                    .description(p.getDescription())
-                                    .contentType(p.getContentType().toString())
-                                    .profilePicture(p.getUser().getProfilePicture())
-                                    .username(p.getUser().getUsername()).build())
+                                    .id(p.id())
+                                    .mediaUrl(p.mediaUrl())
+                                    .description(p.description())
+                                    .contentType(p.contentType().toString())
+                                    .mediaVariants(MediaDerivativeService.variantUrls(p.mediaUrl(), p.mediaVariants()))
+                                    .profilePicture(p.profilePicture())
+                                    .profilePictureVariants(MediaDerivativeService.variantUrls(p.profilePicture(), p.profilePictureVariants()))
+                                    .username(p.username())
+                                    .commentCount(p.commentCount())
+                                    .likedByMe(liked.contains(p.id())).build())
                     .toList();
             log.info("Returning feed DTO list for user '{}'", username);
             return ResponseEntity.ok(getUserPosts);
@@ -309,4 +446,53 @@ public class PostsController {
             return ResponseEntity.internalServerError().body(FeedPostsResponse.builder().message(ex.getMessage()).build());
         }
     }
+
+    private Set<Long> likedByViewer(CustomUserDetails viewer, List<PostView> posts) {
+        if (viewer == null || posts.isEmpty()) {
+            return Set.of();
+        }
+        return postService.likedAmong(viewer.user().getId(), posts.stream().map(PostView::id).toList());
+    }
+
+    private UploadSessionResponse toUploadResponse(UploadSession session, String message) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.id())
+                .size(session.size())
+                .offset(session.offset())
+                .expiresAt(session.expiresAt())
+                .message(message)
+                .build();
+    }
+
+    private AddPostResponse publishPost(String username, String urlMedia, String description, ContentType contentType) {
+        log.info("Creating new post for user '{}'", username);
+        Post postAdded;
+        try {
+            postAdded = postService.createPost(username, urlMedia, description, contentType);
+        } catch (RuntimeException ex) {
+            log.warn("Releasing media '{}' of post that failed to save for user '{}'", urlMedia, username);
+            storageService.delete(urlMedia);
+            throw ex;
+        }
+        log.info("Post created successfully: ID={}, user='{}'", postAdded.getId(), username);
+        if (contentType == ContentType.IMAGE) {
+            mediaDerivativeService.submitForPost(postAdded.getId(), postAdded.getMediaUrl());
+        }
+
+        kafkaProducer.sendPostCreated(PostAddEvent.builder()
+                .postId(postAdded.getId())
+                .senderId(postAdded.getUser().getId())
+                .sender(postAdded.getUser().getUsername())
+                .senderPicture(postAdded.getUser().getProfilePicture())
+                .description(postAdded.getDescription())
+                .mediaType(postAdded.getMediaUrl())
+                .build());
+
+        return AddPostResponse.builder().id(postAdded.getId())
+                .mediaUrl(postAdded.getMediaUrl())
+                .contentType(contentType.name().toLowerCase())
+                .description(postAdded.getDescription())
+                .profilePicture(postAdded.getUser().getProfilePicture())
+                .username(postAdded.getUser().getUsername()).message("Post created with success").build();
+    }
 }
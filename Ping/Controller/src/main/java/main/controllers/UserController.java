@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import main.dto.request.user.UpdateInfoRequest;
 import main.interfaces.IUserService;
 import main.storage.Enums.StorageType;
+import main.storage.MediaDerivativeService;
 import main.storage.StorageService;
 import main.users.User;
 import org.springframework.http.ResponseEntity;
@@ -24,6 +25,7 @@ public class UserController {
 
     private final IUserService userService;
     private final StorageService storageService;
+    private final MediaDerivativeService mediaDerivativeService;
     private final SimpMessagingTemplate simpMessagingTemplate;
 
     @PatchMapping("/update-info")
@@ -46,6 +48,7 @@ public class UserController {
         try {
             var storageFile = storageService.store(file, StorageType.PROFILES);
             var user = userService.uploadProfilePicture(username, storageFile);
+            mediaDerivativeService.submitForUser(user.getId(), storageFile);
             log.info("Profile picture uploaded for '{}'", username);
             simpMessagingTemplate.convertAndSend("/topic/update-picture/" + user.getUsername(),user);
             return ResponseEntity.ok(user);
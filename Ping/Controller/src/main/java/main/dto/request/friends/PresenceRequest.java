@@ -0,0 +1,16 @@
+package main.dto.request.friends;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceRequest {
+    private List<String> usernames;
+}
@@ -0,0 +1,16 @@
+package main.dto.request.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSendRequest {
+    private Long conversationId;
+    private String clientMessageId;
+    private String text;
+}
@@ -1,4 +1,4 @@
-package main.dto.request.posts;
+package main.dto.request.messages;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class DeletePostRequest {
-    private String mediaUrl;
+public class ReadRequest {
+    private Long conversationId;
+    private Long seq;
 }
@@ -0,0 +1,16 @@
+package main.dto.request.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncRequest {
+    private Map<Long, Long> lastSeen;
+}
@@ -0,0 +1,15 @@
+package main.dto.request.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingRequest {
+    private Long conversationId;
+    private boolean typing;
+}
@@ -0,0 +1,20 @@
+package main.dto.response.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatCacheMetricsResponse {
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long evictions;
+    private int conversations;
+    private long messages;
+    private long bytes;
+}
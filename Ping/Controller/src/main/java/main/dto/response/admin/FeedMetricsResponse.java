@@ -0,0 +1,18 @@
+package main.dto.response.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedMetricsResponse {
+    private long pushedPosts;
+    private long pulledPosts;
+    private long timelineWrites;
+    private long pullMerges;
+    private long timelineRebuilds;
+}
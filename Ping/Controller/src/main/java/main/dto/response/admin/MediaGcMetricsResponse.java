@@ -0,0 +1,19 @@
+package main.dto.response.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaGcMetricsResponse {
+    private long runs;
+    private long filesScanned;
+    private long filesDeleted;
+    private long bytesReclaimed;
+    private long lastRunAt;
+    private long lastRunMillis;
+}
@@ -0,0 +1,22 @@
+package main.dto.response.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchIndexMetricsResponse {
+    private boolean caughtUp;
+    private boolean rebuilding;
+    private int segments;
+    private long indexedMessages;
+    private int bufferedMessages;
+    private int tombstones;
+    private long bytes;
+    private long watermark;
+    private long queries;
+}
@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,5 +20,6 @@ public class MeResponse {
     private String phone;
     private String bio;
     private String profilePicture;
+    private List<String> profilePictureVariants;
     private String[] roles;
 }
@@ -0,0 +1,17 @@
+package main.dto.response.friends;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceResponse {
+    private Map<String, String> statuses;
+    private String message;
+}
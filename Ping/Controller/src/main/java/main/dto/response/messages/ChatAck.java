@@ -0,0 +1,20 @@
+package main.dto.response.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatAck {
+    private String clientMessageId;
+    private Long conversationId;
+    private Long messageId;
+    private Long seq;
+    private Long createdAt;
+    private boolean duplicate;
+    private String error;
+}
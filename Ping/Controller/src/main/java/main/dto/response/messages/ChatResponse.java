@@ -12,6 +12,8 @@ import lombok.NoArgsConstructor;
 public class ChatResponse {
     private Long messageId;
     private Long conversationId;
+    private Long seq;
+    private String clientMessageId;
     private String username;
     private String pictureProfile;
     private String text;
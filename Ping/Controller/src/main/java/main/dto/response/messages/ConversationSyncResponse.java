@@ -0,0 +1,19 @@
+package main.dto.response.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSyncResponse {
+    private Long conversationId;
+    private Long lastSeq;
+    private boolean tooFarBehind;
+    private List<DetailsConversations> messages;
+}
@@ -14,6 +14,7 @@ public class DetailsConversations {
     private Long conversationId;
     private User sender;
     private Long id;
+    private Long seq;
     private String text;
     private String messageResponse;
 }
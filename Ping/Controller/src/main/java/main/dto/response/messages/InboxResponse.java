@@ -0,0 +1,24 @@
+package main.dto.response.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxResponse {
+    private Long conversationId;
+    private String name;
+    private String conversationType;
+    private String peerUsername;
+    private String lastMessageText;
+    private String lastMessageSender;
+    private Long lastActivityAt;
+    private Long lastSeq;
+    private Long lastReadSeq;
+    private Long unreadCount;
+    private String messageResponse;
+}
@@ -0,0 +1,16 @@
+package main.dto.response.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadReceipt {
+    private Long conversationId;
+    private String username;
+    private Long lastReadSeq;
+}
@@ -0,0 +1,18 @@
+package main.dto.response.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResponse {
+    private List<ChatResponse> messages;
+    private Long nextBeforeId;
+    private String messageResponse;
+}
@@ -13,6 +13,7 @@ import main.users.User;
 public class SendMessageResponse {
     private Long id;
     private Long conversationId;
+    private Long seq;
     private String text;
     private User user;
     private String messageResponse;
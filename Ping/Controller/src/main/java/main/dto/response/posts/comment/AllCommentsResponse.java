@@ -14,5 +14,6 @@ public class AllCommentsResponse {
     private String text;
     private String username;
     private String profilePicture;
+    private Long createdAt;
     private String message;
 }
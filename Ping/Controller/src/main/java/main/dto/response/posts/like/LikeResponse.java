@@ -1,5 +1,6 @@
 package main.dto.response.posts.like;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,8 +11,10 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class LikeResponse {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long id;
     private Long postId;
     private Long userId;
+    private boolean changed;
     private String message;
 }
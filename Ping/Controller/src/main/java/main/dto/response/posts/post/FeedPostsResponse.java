@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @AllArgsConstructor
@@ -13,8 +15,12 @@ public class FeedPostsResponse {
     private Long id;
     private String mediaUrl;
     private String contentType;
+    private List<String> mediaVariants;
     private String description;
     private String profilePicture;
+    private List<String> profilePictureVariants;
     private String username;
+    private Long commentCount;
+    private boolean likedByMe;
     private String message;
 }
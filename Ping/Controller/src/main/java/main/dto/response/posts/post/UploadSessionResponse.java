@@ -0,0 +1,18 @@
+package main.dto.response.posts.post;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionResponse {
+    private String uploadId;
+    private Long size;
+    private Long offset;
+    private Long expiresAt;
+    private String message;
+}
@@ -24,6 +24,10 @@ public interface FriendsRepository extends JpaRepository<Friendship, Long> {
             " f.sender where (f.receiver = :receiver or f.sender =:receiver) and f.friendshipRequestType = :requestType")
     List<Friendship> acceptedRequestByUser(@Param("receiver") User receiver, @Param("requestType") FriendshipRequestType requestType);
 
+    @Query("select case when f.sender.id = :userId then f.receiver.id else f.sender.id end from Friendship f " +
+            "where (f.sender.id = :userId or f.receiver.id = :userId) and f.friendshipRequestType = :requestType")
+    List<Long> friendIdsByUser(@Param("userId") Long userId, @Param("requestType") FriendshipRequestType requestType);
+
     @Query("select distinct f2.receiver from Friendship f1 join Friendship " +
             "f2 on f1.receiver = f2.sender where f1.sender = :user and f2.receiver != :user" +
             " and f2.receiver not in (select f3.receiver from Friendship f3 where f3.sender = :user)")
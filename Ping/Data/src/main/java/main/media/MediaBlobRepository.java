@@ -0,0 +1,57 @@
+package main.media;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, Long> {
+    Optional<MediaBlob> findBySha256(String sha256);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into media_blobs (sha256, path, size, ref_count, created_at, updated_at) " +
+            "values (:sha256, :path, :size, 1, :now, :now) on conflict (sha256) do update " +
+            "set path = excluded.path, size = excluded.size, ref_count = 1, updated_at = excluded.updated_at " +
+            "where media_blobs.ref_count <= 0", nativeQuery = true)
+    int insertOrReclaim(@Param("sha256") String sha256, @Param("path") String path, @Param("size") long size, @Param("now") Long now);
+
+    @Modifying
+    @Transactional
+    @Query("update MediaBlob b set b.refCount = b.refCount + 1, b.updatedAt = :now where b.sha256 = :sha256 and b.refCount > 0")
+    int retain(@Param("sha256") String sha256, @Param("now") Long now);
+
+    @Modifying
+    @Transactional
+    @Query("update MediaBlob b set b.refCount = b.refCount - 1 where b.path = :path and b.refCount > 0")
+    int release(@Param("path") String path);
+
+    @Modifying
+    @Transactional
+    @Query("delete from MediaBlob b where b.path = :path and b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("path") String path);
+
+    /**
+     * Drops one reference and deletes the row with its last one, in a single transaction.
+     * Returns -1 if the path had no live reference, 0 if references remain and 1 if the row was deleted.
+     */
+    @Transactional
+    default int releaseAndDeleteIfUnreferenced(String path) {
+        if (release(path) == 0) {
+            return -1;
+        }
+        return deleteIfUnreferenced(path);
+    }
+
+    boolean existsByPath(String path);
+
+    @Modifying
+    @Transactional
+    @Query("delete from MediaBlob b where b.path = :path and b.updatedAt < :cutoff")
+    int deleteIfIdleSince(@Param("path") String path, @Param("cutoff") Long cutoff);
+}
@@ -0,0 +1,87 @@
+package main.messages;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ConversationMemberRepository extends JpaRepository<ConversationMember, Long> {
+    @Query("""
+                select new main.messages.InboxEntry(c.id, c.name, c.conversationType,
+                       case when c.conversationType = main.messages.Enums.ConversationType.PRIVATE
+                            then (select min(u.username) from ConversationMember o, User u
+                                  where o.conversationId = c.id and u.id = o.userId and o.userId <> m.userId)
+                            else null end,
+                       c.lastMessageText, c.lastMessageSender, coalesce(c.lastMessageAt, c.createdAt), c.lastSeq, m.lastReadSeq)
+                from ConversationMember m, Conversation c
+                where m.userId = :userId and c.id = m.conversationId
+                  and (coalesce(c.lastMessageAt, c.createdAt) < :before
+                       or (coalesce(c.lastMessageAt, c.createdAt) = :before and c.id < :beforeId))
+                order by coalesce(c.lastMessageAt, c.createdAt) desc, c.id desc
+            """)
+    List<InboxEntry> inbox(@Param("userId") Long userId, @Param("before") Long before,
+                           @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("""
+                select new main.messages.MemberReadState(u.id, c.lastSeq, m.lastReadSeq)
+                from ConversationMember m, Conversation c, User u
+                where m.conversationId = :conversationId and u.username = :username
+                  and m.userId = u.id and c.id = m.conversationId
+            """)
+    Optional<MemberReadState> findReadState(@Param("conversationId") Long conversationId, @Param("username") String username);
+
+    @Query("select m.userId from ConversationMember m where m.conversationId = :conversationId")
+    List<Long> findUserIds(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                insert into conversation_member (conversation_id, user_id, last_read_seq, created_at, updated_at)
+                select c.id, :userId, c.last_seq, :now, :now from conversation c where c.id = :conversationId
+                on conflict (conversation_id, user_id) do nothing
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("conversationId") Long conversationId, @Param("userId") Long userId, @Param("now") Long now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ConversationMember m where m.conversationId = :conversationId and m.userId = :userId")
+    int deleteMember(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update conversation_member m
+                set last_read_seq = c.last_seq
+                from conversation c
+                where c.id = m.conversation_id and m.conversation_id = :conversationId
+            """, nativeQuery = true)
+    int resetAfterMerge(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ConversationMember m where m.conversationId = :conversationId")
+    int deleteByConversationId(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                insert into conversation_member (conversation_id, user_id, last_read_seq, created_at, updated_at)
+                select cu.conversation_id, cu.user_id, c.last_seq, :now, :now
+                from conversations_users cu
+                join conversation c on c.id = cu.conversation_id
+                on conflict (conversation_id, user_id) do nothing
+            """, nativeQuery = true)
+    int backfillFromParticipants(@Param("now") Long now);
+
+    @Modifying
+    @Transactional
+    @Query(value = "alter table conversation_member drop column if exists last_activity_at", nativeQuery = true)
+    void dropLastActivityAt();
+}
@@ -1,15 +1,110 @@
 package main.messages;
 
 import main.users.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
     @Query("select c from Conversation c join fetch c.participants where :user member of c.participants order by c.createdAt desc")
     List<Conversation> findConversationsByUser(@Param("user") User user);
+
+    @Query("select new main.messages.ConversationSeq(c.id, c.lastSeq) from Conversation c join c.participants u where u.username = :username")
+    List<ConversationSeq> findSeqsByUsername(@Param("username") String username);
+
+    @Query("select c from Conversation c where c.privateUserLow = :low and c.privateUserHigh = :high")
+    Optional<Conversation> findPrivatePair(@Param("low") Long userLow, @Param("high") Long userHigh);
+
+    /** Serialises creating or assigning the private conversation of a user pair until commit. */
+    @Query(value = "select 1 from pg_advisory_xact_lock(:low * 31 + :high)", nativeQuery = true)
+    Integer lockPrivatePair(@Param("low") Long userLow, @Param("high") Long userHigh);
+
+    @Query("""
+                select new main.messages.PrivatePair(c.id, min(u.id), max(u.id))
+                from Conversation c join c.participants u
+                where c.conversationType = main.messages.Enums.ConversationType.PRIVATE and c.privateUserLow is null
+                group by c.id
+                having count(u) = 2
+                order by c.id
+            """)
+    List<PrivatePair> findUnpairedPrivate(Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update Conversation c set c.privateUserLow = :low, c.privateUserHigh = :high where c.id = :id")
+    int assignPrivatePair(@Param("id") Long conversationId, @Param("low") Long userLow, @Param("high") Long userHigh);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update conversation c
+                set last_seq = coalesce((select max(m.seq) from message m where m.conversation_id = c.id), 0),
+                    last_message_text = l.text, last_message_sender = l.username, last_message_at = l.created_at
+                from (select left(m.text, 140) as text, u.username, m.created_at
+                      from message m join users u on u.id = m.user_id
+                      where m.conversation_id = :id order by m.seq desc limit 1) l
+                where c.id = :id
+            """, nativeQuery = true)
+    int refreshLastMessage(@Param("id") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from conversations_users where conversation_id = :id", nativeQuery = true)
+    int deleteParticipants(@Param("id") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from conversation where id = :id", nativeQuery = true)
+    int deleteConversationRow(@Param("id") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into conversations_users (conversation_id, user_id) values (:conversationId, :userId) on conflict do nothing", nativeQuery = true)
+    int addParticipant(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from conversations_users where conversation_id = :conversationId and user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+
+    @Query("select c.lastSeq from Conversation c where c.id = :id")
+    Optional<Long> findLastSeq(@Param("id") Long conversationId);
+
+    @Transactional
+    @Query(value = "update conversation set last_seq = last_seq + 1 where id = :id returning last_seq", nativeQuery = true)
+    Optional<Long> nextSeq(@Param("id") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query("update Conversation c set c.lastMessageText = :text, c.lastMessageSender = :sender, c.lastMessageAt = :at where c.id = :id")
+    int recordLastMessage(@Param("id") Long conversationId, @Param("text") String text, @Param("sender") String sender, @Param("at") Long at);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update conversation c
+                set last_message_text = left(m.text, 140), last_message_sender = u.username, last_message_at = m.created_at
+                from (select distinct on (conversation_id) conversation_id, text, user_id, created_at
+                      from message order by conversation_id, seq desc) m
+                join users u on u.id = m.user_id
+                where m.conversation_id = c.id and c.last_message_at is null
+            """, nativeQuery = true)
+    int backfillLastMessage();
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update conversation c set last_seq = m.max_seq
+                from (select conversation_id, max(seq) as max_seq from message group by conversation_id) m
+                where m.conversation_id = c.id and c.last_seq < m.max_seq
+            """, nativeQuery = true)
+    int reconcileLastSeq();
 }
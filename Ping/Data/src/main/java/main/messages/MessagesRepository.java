@@ -1,14 +1,74 @@
 package main.messages;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessagesRepository extends JpaRepository<Message, Long> {
-    @Query("select m from Message m join fetch m.user where m.conversation = :conversation")
-    List<Message> findByConversation(@Param("conversation") Conversation conversation);
+    @Query("select m from Message m join fetch m.user where m.conversation.id = :conversationId and m.seq < :before order by m.seq desc")
+    List<Message> findBefore(@Param("conversationId") Long conversationId, @Param("before") Long before, Pageable pageable);
+
+    @Query("select m from Message m join fetch m.user where m.conversation.id = :conversationId and m.seq > :after order by m.seq asc")
+    List<Message> findAfter(@Param("conversationId") Long conversationId, @Param("after") Long after, Pageable pageable);
+
+    @Query("select m from Message m join fetch m.user u where u.username = :username and m.clientMessageId = :clientMessageId")
+    Optional<Message> findByClientMessageId(@Param("username") String username, @Param("clientMessageId") String clientMessageId);
+
+    @Query(value = "select 1 from pg_advisory_xact_lock(:key)", nativeQuery = true)
+    Integer lockTransactionKey(@Param("key") long key);
+
+    @Query("select m from Message m join fetch m.user where m.id in :ids")
+    List<Message> findWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select m.id from Message m where m.conversation.id = :conversationId")
+    List<Long> findIdsByConversationId(@Param("conversationId") Long conversationId);
+
+    @Query("select m.id from Message m where m.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    @Query("select new main.messages.IndexableMessage(m.id, m.conversation.id, m.text) from Message m where m.id > :afterId order by m.id asc")
+    List<IndexableMessage> findForIndex(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update message m set seq = s.base + s.rn
+                from (
+                    select n.id,
+                           row_number() over (partition by n.conversation_id order by n.created_at, n.id) as rn,
+                           coalesce((select max(x.seq) from message x where x.conversation_id = n.conversation_id), 0) as base
+                    from message n
+                    where n.seq is null
+                ) s
+                where m.id = s.id
+            """, nativeQuery = true)
+    int backfillSeq();
+
+    @Modifying
+    @Transactional
+    @Query(value = "update message set conversation_id = :survivorId, seq = -id where conversation_id in (:survivorId, :duplicateId)", nativeQuery = true)
+    int parkForMerge(@Param("survivorId") Long survivorId, @Param("duplicateId") Long duplicateId);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update message m set seq = r.rn
+                from (select id, row_number() over (order by created_at, id) as rn from message where conversation_id = :conversationId) r
+                where m.id = r.id
+            """, nativeQuery = true)
+    int renumber(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "create unique index if not exists uk_message_conversation_seq on message (conversation_id, seq)", nativeQuery = true)
+    void ensureConversationSeqIndex();
 }
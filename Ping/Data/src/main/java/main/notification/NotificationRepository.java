@@ -2,10 +2,13 @@ package main.notification;
 
 import main.users.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,4 +19,14 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
 
     @Query("select n from Notification n join fetch n.user where n.user = :user order by n.createdAt desc")
     List<Notification> findByUser(@Param("user") User user);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into notification (user_id, text, is_read, created_at, updated_at) " +
+            "select u.id, :text, false, :createdAt, :createdAt from users u where u.id in (:userIds)", nativeQuery = true)
+    int insertForUsers(@Param("userIds") Collection<Long> userIds, @Param("text") String text, @Param("createdAt") Long createdAt);
+
+    @Query("select new main.notification.NotificationRecipient(n.id, u.username, n.text, n.isRead) from Notification n join n.user u " +
+            "where u.id in :userIds and n.text = :text and n.createdAt = :createdAt")
+    List<NotificationRecipient> findRecipients(@Param("userIds") Collection<Long> userIds, @Param("text") String text, @Param("createdAt") Long createdAt);
 }
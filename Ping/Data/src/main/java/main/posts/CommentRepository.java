@@ -1,5 +1,6 @@
 package main.posts;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +10,14 @@ import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    @Query("select c from Comment c join fetch c.user where c.post = :post order by c.createdAt desc")
-    List<Comment> commentsPerPost(@Param("post") Post post);
+    @Query("""
+                select new main.posts.CommentView(c.id, c.text, u.username, u.profilePicture, c.createdAt)
+                from Comment c
+                join c.user u
+                where c.post.id = :postId
+                  and (c.createdAt < :beforeCreatedAt or (c.createdAt = :beforeCreatedAt and c.id < :beforeId))
+                order by c.createdAt desc, c.id desc
+            """)
+    List<CommentView> commentsPage(@Param("postId") Long postId, @Param("beforeCreatedAt") Long beforeCreatedAt,
+                                   @Param("beforeId") Long beforeId, Pageable pageable);
 }
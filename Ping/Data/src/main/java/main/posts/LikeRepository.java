@@ -2,9 +2,11 @@ package main.posts;
 
 import main.users.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -22,4 +24,28 @@ public interface LikeRepository extends JpaRepository<Like, Long> {
 
     @Query("select l from Like l join fetch l.post where l.user = :user")
     List<Like> foundLikeUser(@Param("user") User user);
+
+    @Query("select l.post.id from Like l where l.user.id = :userId")
+    List<Long> likedPostIdsByUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into likes (post_id, user_id, created_at, updated_at) values (:postId, :userId, :now, :now) " +
+            "on conflict (post_id, user_id) do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("postId") Long postId, @Param("userId") Long userId, @Param("now") Long now);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from likes where post_id = :postId and user_id = :userId", nativeQuery = true)
+    int deleteByPostIdAndUserId(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from likes l using likes d where l.post_id = d.post_id and l.user_id = d.user_id and l.id > d.id", nativeQuery = true)
+    int deleteDuplicates();
+
+    @Modifying
+    @Transactional
+    @Query(value = "create unique index if not exists uk_likes_post_user on likes (post_id, user_id)", nativeQuery = true)
+    void ensureUniquePostUser();
 }
@@ -1,21 +1,43 @@
 package main.posts;
 
 import main.friends.Enums.FriendshipRequestType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PostsRepository extends JpaRepository<Post, Long> {
-    @Query("select p from Post p join fetch p.user where p.user.username = :username")
-    List<Post> findByUsername(@Param("username") String username);
+    @Query("select new main.posts.PostView(p.id, p.mediaUrl, p.description, p.contentType, p.mediaVariants, u.username, u.profilePicture, u.profilePictureVariants, p.commentCount) " +
+            "from Post p join p.user u where u.username = :username order by p.id desc")
+    List<PostView> findViewsByUsername(@Param("username") String username);
 
     @Query("""
-                select p from Post p
-                join fetch p.user u
+                select new main.posts.PostView(p.id, p.mediaUrl, p.description, p.contentType, p.mediaVariants, u.username, u.profilePicture, u.profilePictureVariants, p.commentCount)
+                from Post p
+                join p.user u
+                where p.id < :before and u.username <> :username and exists (
+                    select 1 from Friendship f
+                    where f.friendshipRequestType = :status
+                      and (
+                          (f.sender.username = :username and f.receiver = u) or
+                          (f.receiver.username = :username and f.sender = u)
+                      )
+                )
+                order by p.id desc
+            """)
+    List<PostView> feedViewsByUsername(@Param("username") String username, @Param("status") FriendshipRequestType status,
+                                       @Param("before") Long before, Pageable pageable);
+
+    @Query("""
+                select p.id from Post p
+                join p.user u
                 where u.username <> :username and exists (
                     select 1 from Friendship f
                     where f.friendshipRequestType = :status
@@ -26,6 +48,51 @@ public interface PostsRepository extends JpaRepository<Post, Long> {
                 )
                 order by p.id desc
             """)
-    List<Post> feedByUsername(@Param("username") String username, @Param("status") FriendshipRequestType status);
-}
+    List<Long> feedIdsByUsername(@Param("username") String username, @Param("status") FriendshipRequestType status, Pageable pageable);
+
+    @Query("select new main.posts.PostView(p.id, p.mediaUrl, p.description, p.contentType, p.mediaVariants, u.username, u.profilePicture, u.profilePictureVariants, p.commentCount) " +
+            "from Post p join p.user u where p.id in :ids")
+    List<PostView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new main.posts.PostStatsView(p.id, p.user.id, p.createdAt, " +
+            "(select count(l) from Like l where l.post = p), " +
+            "p.commentCount) " +
+            "from Post p where p.id in :ids")
+    List<PostStatsView> findStatsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select p.mediaUrl from Post p where p.mediaUrl in :paths")
+    List<String> findMediaUrlsIn(@Param("paths") Collection<String> paths);
 
+    @Query("select new main.posts.PostCount(p.id, p.likeCount) from Post p where p.id in :ids")
+    List<PostCount> findLikeCountsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update posts p set like_count = coalesce(c.total, 0)
+                from posts p2
+                left join (select post_id, count(*) as total from likes group by post_id) c on c.post_id = p2.id
+                where p.id = p2.id and p.like_count <> coalesce(c.total, 0)
+            """, nativeQuery = true)
+    int reconcileLikeCounts();
+
+    @Modifying
+    @Transactional
+    @Query("update Post p set p.mediaVariants = :variants where p.id = :postId and p.mediaUrl = :mediaUrl")
+    int updateMediaVariants(@Param("postId") Long postId, @Param("mediaUrl") String mediaUrl, @Param("variants") String variants);
+
+    @Modifying
+    @Transactional
+    @Query("update Post p set p.commentCount = p.commentCount + :delta where p.id = :postId")
+    int addCommentCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+                update posts p set comment_count = coalesce(c.total, 0)
+                from posts p2
+                left join (select post_id, count(*) as total from comment group by post_id) c on c.post_id = p2.id
+                where p.id = p2.id and p.comment_count <> coalesce(c.total, 0)
+            """, nativeQuery = true)
+    int reconcileCommentCounts();
+}
@@ -1,10 +1,13 @@
 package main.users;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +17,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("select distinct u from User u join fetch u.roles where u.username = :username")
     Optional<User> findByUsername(@Param("username") String username);
 
+    @Query("select u from User u where u.username = :username")
+    Optional<User> findSenderByUsername(@Param("username") String username);
+
+    @Query("select u.id from User u where u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    @Query("select u.profilePicture from User u where u.profilePicture in :paths")
+    List<String> findProfilePicturesIn(@Param("paths") Collection<String> paths);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.profilePictureVariants = :variants where u.id = :userId and u.profilePicture = :picture")
+    int updateProfilePictureVariants(@Param("userId") Long userId, @Param("picture") String picture, @Param("variants") String variants);
+
     @Query("select u from User u join fetch u.roles where u.phone = :phone")
     Optional<User> findByPhone(@Param("phone") String phone);
 
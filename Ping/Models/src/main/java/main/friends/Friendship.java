@@ -11,7 +11,10 @@ import main.users.User;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "friendships")
+@Table(name = "friendships", indexes = {
+        @Index(name = "idx_friendships_sender_status", columnList = "sender_id, friendship_request"),
+        @Index(name = "idx_friendships_receiver_status", columnList = "receiver_id, friendship_request")
+})
 public class Friendship {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
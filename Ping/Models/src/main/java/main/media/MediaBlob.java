@@ -0,0 +1,30 @@
+package main.media;
+
+import jakarta.persistence.*;
+import lombok.*;
+import main.generics.BaseEntity;
+
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "media_blobs", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_media_blobs_sha256", columnNames = "sha256"),
+        @UniqueConstraint(name = "uk_media_blobs_path", columnNames = "path")
+})
+@EqualsAndHashCode(callSuper = true)
+public class MediaBlob extends BaseEntity<Long> {
+
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "path", nullable = false)
+    private String path;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+}
@@ -6,6 +6,7 @@ import lombok.*;
 import main.generics.BaseEntity;
 import main.messages.Enums.ConversationType;
 import main.users.User;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -15,7 +16,7 @@ import java.util.Set;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "conversation")
+@Table(name = "conversation", uniqueConstraints = @UniqueConstraint(name = "uk_conversation_private_pair", columnNames = {"private_user_low", "private_user_high"}))
 @EqualsAndHashCode(callSuper = true)
 public class Conversation extends BaseEntity<Long> {
 
@@ -26,6 +27,26 @@ public class Conversation extends BaseEntity<Long> {
     @Enumerated(EnumType.STRING)
     private ConversationType conversationType;
 
+    @Column(name = "private_user_low")
+    private Long privateUserLow;
+
+    @Column(name = "private_user_high")
+    private Long privateUserHigh;
+
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq = 0L;
+
+    @Column(name = "last_message_text", length = 140)
+    private String lastMessageText;
+
+    @Column(name = "last_message_sender", length = 50)
+    private String lastMessageSender;
+
+    @Column(name = "last_message_at")
+    private Long lastMessageAt;
+
     @JsonIgnore
     @Builder.Default
     @ToString.Exclude
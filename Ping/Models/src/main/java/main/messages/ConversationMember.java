@@ -0,0 +1,29 @@
+package main.messages;
+
+import jakarta.persistence.*;
+import lombok.*;
+import main.generics.BaseEntity;
+import org.hibernate.annotations.ColumnDefault;
+
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "conversation_member",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversation_member", columnNames = {"conversation_id", "user_id"}),
+        indexes = @Index(name = "idx_conversation_member_user", columnList = "user_id, conversation_id"))
+@EqualsAndHashCode(callSuper = true)
+public class ConversationMember extends BaseEntity<Long> {
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "last_read_seq", nullable = false)
+    private Long lastReadSeq = 0L;
+}
@@ -0,0 +1,4 @@
+package main.messages;
+
+public record ConversationSeq(Long conversationId, Long lastSeq) {
+}
@@ -0,0 +1,15 @@
+package main.messages;
+
+import main.messages.Enums.ConversationType;
+
+public record InboxEntry(Long conversationId, String name, ConversationType conversationType, String peerUsername,
+                         String lastMessageText, String lastMessageSender, Long lastActivityAt, Long lastSeq, Long lastReadSeq) {
+
+    public InboxEntry withLastReadSeq(Long lastReadSeq) {
+        return new InboxEntry(conversationId, name, conversationType, peerUsername, lastMessageText, lastMessageSender, lastActivityAt, lastSeq, lastReadSeq);
+    }
+
+    public long unreadCount() {
+        return Math.max(0, lastSeq - lastReadSeq);
+    }
+}
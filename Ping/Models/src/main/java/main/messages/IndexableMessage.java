@@ -0,0 +1,4 @@
+package main.messages;
+
+public record IndexableMessage(Long id, Long conversationId, String text) {
+}
@@ -0,0 +1,4 @@
+package main.messages;
+
+public record MemberReadState(Long userId, Long lastSeq, Long lastReadSeq) {
+}
@@ -12,11 +12,19 @@ import main.users.User;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "message")
+@Table(name = "message", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_message_conversation_seq", columnNames = {"conversation_id", "seq"}),
+        @UniqueConstraint(name = "uk_message_user_client_id", columnNames = {"user_id", "client_message_id"})
+})
 @EqualsAndHashCode(callSuper = true)
-
 public class Message extends BaseEntity<Long> {
 
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "client_message_id", length = 64)
+    private String clientMessageId;
+
     @Column(name = "text", length = 1000, nullable = false)
     private String text;
 
@@ -0,0 +1,4 @@
+package main.messages;
+
+public record PrivatePair(Long conversationId, Long userLow, Long userHigh) {
+}
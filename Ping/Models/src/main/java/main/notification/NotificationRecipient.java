@@ -0,0 +1,4 @@
+package main.notification;
+
+public record NotificationRecipient(Long notificationId, String username, String text, boolean isRead) {
+}
@@ -11,7 +11,7 @@ import main.users.User;
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "comment")
+@Table(name = "comment", indexes = @Index(name = "idx_comment_post_created", columnList = "post_id, created_at, id"))
 @EqualsAndHashCode(callSuper = true)
 public class Comment extends BaseEntity<Long> {
     @Id
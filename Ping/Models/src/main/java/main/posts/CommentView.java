@@ -0,0 +1,4 @@
+package main.posts;
+
+public record CommentView(Long id, String text, String username, String profilePicture, Long createdAt) {
+}
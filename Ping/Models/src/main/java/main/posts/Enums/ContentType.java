@@ -2,4 +2,5 @@ package main.posts.Enums;
 
 public enum ContentType {
     IMAGE,
+    VIDEO,
 }
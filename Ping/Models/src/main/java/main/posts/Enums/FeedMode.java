@@ -0,0 +1,6 @@
+package main.posts.Enums;
+
+public enum FeedMode {
+    LATEST,
+    RANKED
+}
@@ -11,7 +11,7 @@ import main.users.User;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "likes")
+@Table(name = "likes", uniqueConstraints = @UniqueConstraint(name = "uk_likes_post_user", columnNames = {"post_id", "user_id"}))
 @EqualsAndHashCode(callSuper = true)
 public class Like extends BaseEntity<Long> {
     @JsonIgnore
@@ -6,6 +6,7 @@ import lombok.*;
 import main.generics.BaseEntity;
 import main.posts.Enums.ContentType;
 import main.users.User;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -15,7 +16,7 @@ import java.util.Set;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "posts")
+@Table(name = "posts", indexes = @Index(name = "idx_posts_user_id", columnList = "user_id, id"))
 @EqualsAndHashCode(callSuper = true)
 public class Post extends BaseEntity<Long> {
 
@@ -29,6 +30,19 @@ public class Post extends BaseEntity<Long> {
     @Column(name = "post_type", nullable = false)
     private ContentType contentType;
 
+    @Column(name = "media_variants", length = 100)
+    private String mediaVariants;
+
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "like_count", nullable = false)
+    private Long likeCount = 0L;
+
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "comment_count", nullable = false)
+    private Long commentCount = 0L;
+
     @JsonIgnore
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
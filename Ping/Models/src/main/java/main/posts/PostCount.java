@@ -0,0 +1,4 @@
+package main.posts;
+
+public record PostCount(Long postId, Long count) {
+}
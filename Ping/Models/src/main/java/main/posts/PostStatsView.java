@@ -0,0 +1,4 @@
+package main.posts;
+
+public record PostStatsView(Long postId, Long authorId, Long createdAt, Long likes, Long comments) {
+}
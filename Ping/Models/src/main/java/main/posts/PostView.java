@@ -0,0 +1,7 @@
+package main.posts;
+
+import main.posts.Enums.ContentType;
+
+public record PostView(Long id, String mediaUrl, String description, ContentType contentType, String mediaVariants,
+                       String username, String profilePicture, String profilePictureVariants, Long commentCount) {
+}
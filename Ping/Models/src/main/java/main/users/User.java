@@ -47,6 +47,9 @@ public class User {
     @Column(name = "profile_picture_url")
     private String profilePicture;
 
+    @Column(name = "profile_picture_variants", length = 100)
+    private String profilePictureVariants;
+
     @JsonIgnore
     @Builder.Default
     @ToString.Exclude
@@ -15,6 +15,8 @@ public interface IFriendsService {
 
     List<Friendship> getAllAcceptedFriendships(String username);
 
+    List<Long> getAcceptedFriendIds(Long userId);
+
     List<User> getSuggestedFriends(String username);
 
     void deleteFriendship(Long friendshipId);
@@ -1,22 +1,45 @@
 package main.interfaces;
 
 import main.messages.Conversation;
+import main.messages.InboxEntry;
 import main.messages.Message;
+import main.services.messages.ConversationDelta;
+import main.services.messages.SentMessage;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface IMessageService {
     Conversation createPrivateConversation(String username1, String username2);
 
+    Conversation findOrCreatePrivateConversation(String username1, String username2);
+
     Conversation createGroupConversation(String groupName, List<String> usernames);
 
     void deleteConversation(Long conversationId);
 
     Message sendMessage(Long conversationId, String senderUsername, String content);
 
+    SentMessage sendMessage(Long conversationId, String senderUsername, String content, String clientMessageId);
+
     void deleteMessage(Long messageId);
 
     List<Conversation> getConversationsByUser(String username);
 
-    List<Message> getMessagesConversationId(Long conversationId);
+    List<Message> getMessagesConversationId(Long conversationId, Long before, Long after, Integer limit);
+
+    List<InboxEntry> getInbox(String username, Long before, Long beforeId, Integer limit);
+
+    Optional<Long> markConversationRead(Long conversationId, String username, Long seq);
+
+    boolean isMember(Long conversationId, Long userId);
+
+    void addParticipant(Long conversationId, String username);
+
+    void removeParticipant(Long conversationId, String username);
+
+    List<Message> searchMessages(String username, String query, Long beforeId, Integer limit);
+
+    List<ConversationDelta> syncConversations(String username, Map<Long, Long> lastSeenSeqs);
 }
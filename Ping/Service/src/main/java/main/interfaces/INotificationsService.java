@@ -1,12 +1,16 @@
 package main.interfaces;
 
 import main.notification.Notification;
+import main.notification.NotificationRecipient;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface INotificationsService {
     Notification addNotification(String username, String message);
 
+    List<NotificationRecipient> addNotifications(Collection<Long> userIds, String message);
+
     void deleteNotification(Long id);
 
     List<Notification> getUnRead(String username);
@@ -1,22 +1,33 @@
 package main.interfaces;
 
 import main.posts.Comment;
+import main.posts.CommentView;
 import main.posts.Enums.ContentType;
 import main.posts.Like;
 import main.posts.Post;
+import main.posts.PostView;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface IPostService {
-    Like addLike(Long userId, Long postId);
+    boolean addLike(Long userId, Long postId);
 
-    Like dislike(Long postId, Long userId);
+    boolean dislike(Long postId, Long userId);
 
     Long getCountLikes(Long postId);
 
-    List<Post> getUserPosts(String username);
+    Map<Long, Long> getCountLikes(Collection<Long> postIds);
 
-    List<Post> getFeed(String username);
+    Set<Long> likedAmong(Long userId, Collection<Long> postIds);
+
+    List<PostView> getUserPosts(String username);
+
+    List<PostView> getFeed(String username, Long before, Integer limit);
+
+    List<PostView> getRankedFeed(String username, Integer limit);
 
     Post createPost(String username, String mediaUrl, String description, ContentType type);
 
@@ -24,7 +35,7 @@ public interface IPostService {
 
     Comment addComment(Long postId, Long userId, String text);
 
-    List<Comment> getCommentsPerPost(Long postId);
+    List<CommentView> getCommentsPerPost(Long postId, Long beforeCreatedAt, Long beforeId, Integer limit);
 
     Comment deleteComment(Long id);
 
@@ -14,6 +14,8 @@ public interface IUserService {
 
     Optional<User> findByUsername(String username);
 
+    Optional<Long> findIdByUsername(String username);
+
     Optional<User> findByPhone(String phone);
 
     List<User> searchUsers(String keyword);
@@ -9,6 +9,7 @@ import main.friends.Enums.FriendshipRequestType;
 import main.friends.FriendsRepository;
 import main.friends.Friendship;
 import main.interfaces.IFriendsService;
+import main.services.feed.TimelineStore;
 import main.users.User;
 import main.users.UserRepository;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,7 @@ public class FriendsService implements IFriendsService {
 
     private final UserRepository userRepository;
     private final FriendsRepository friendsRepository;
+    private final TimelineStore timelineStore;
 
     @Override
     public Friendship sendRequest(String senderUsername, String receiverUsername) {
@@ -66,6 +68,8 @@ public class FriendsService implements IFriendsService {
 
         sender.removeFriendshipAsSender(friendship);
         receiver.removeFriendshipAsReceiver(friendship);
+        timelineStore.invalidate(sender.getId());
+        timelineStore.invalidate(receiver.getId());
         log.info("Friendship between '{}' and '{}' successfully deleted", sender.getUsername(), receiver.getUsername());
     }
 
@@ -80,6 +84,8 @@ public class FriendsService implements IFriendsService {
                 }
         );
         friendship.setFriendshipRequestType(type);
+        timelineStore.invalidate(friendship.getSender().getId());
+        timelineStore.invalidate(friendship.getReceiver().getId());
         log.info("Friendship request #{} was updated to {}", friendshipId, type);
         return friendship;
     }
@@ -108,6 +114,11 @@ public class FriendsService implements IFriendsService {
         return friendships;
     }
 
+    @Override
+    public List<Long> getAcceptedFriendIds(Long userId) {
+        return friendsRepository.friendIdsByUser(userId, FriendshipRequestType.Accepted);
+    }
+
     @Override
     public List<User> getSuggestedFriends(String username) {
         log.info("Fetching all suggested friendships for user '{}'", username);
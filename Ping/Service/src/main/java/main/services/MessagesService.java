@@ -1,53 +1,115 @@
 package main.services;
 
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.interfaces.IMessageService;
 import main.messages.Conversation;
+import main.messages.ConversationMember;
+import main.messages.ConversationMemberRepository;
 import main.messages.ConversationRepository;
+import main.messages.ConversationSeq;
 import main.messages.Enums.ConversationType;
+import main.messages.InboxEntry;
 import main.messages.Message;
 import main.messages.MessagesRepository;
+import main.services.messages.ConversationDelta;
+import main.services.messages.ConversationMembershipIndex;
+import main.services.messages.ReadWatermarkStore;
+import main.services.messages.RecentMessageCache;
+import main.services.messages.SentMessage;
+import main.services.search.MessageSearchIndex;
+import main.services.search.MessageTokenizer;
 import main.users.User;
 import main.users.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MessagesService implements IMessageService {
 
+    private static final int DEFAULT_MESSAGE_LIMIT = 50;
+    private static final int MAX_MESSAGE_LIMIT = 200;
+    private static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+    private static final int DEFAULT_INBOX_LIMIT = 20;
+    private static final int MAX_INBOX_LIMIT = 100;
+    private static final int SNIPPET_LENGTH = 140;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_SEARCH_TERMS = 8;
+
     private final UserRepository userRepository;
     private final ConversationRepository conversationRepository;
     private final MessagesRepository messagesRepository;
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final ReadWatermarkStore readWatermarkStore;
+    private final RecentMessageCache recentMessageCache;
+    private final ConversationMembershipIndex conversationMembershipIndex;
+    private final MessageSearchIndex messageSearchIndex;
+
+    @Value("${chat.sync.max-per-conversation:200}")
+    private int syncMaxPerConversation;
+
+    @Value("${chat.sync.max-total:1000}")
+    private int syncMaxTotal;
 
+    @Transactional
     public Conversation createPrivateConversation(String username1, String username2) {
-        log.debug("Attempting to create private conversation between '{}' and '{}'", username1, username2);
+        return findOrCreatePrivateConversation(username1, username2);
+    }
+
+    @Transactional
+    public Conversation findOrCreatePrivateConversation(String username1, String username2) {
+        log.debug("Resolving private conversation between '{}' and '{}'", username1, username2);
 
-        var user1 = userRepository.findByUsername(username1).orElseThrow(() -> {
+        var userId1 = userRepository.findIdByUsername(username1).orElseThrow(() -> {
             log.error("First user '{}' not found", username1);
             return new IllegalArgumentException("User not found: " + username1);
         });
-        var user2 = userRepository.findByUsername(username2).orElseThrow(() -> {
+        var userId2 = userRepository.findIdByUsername(username2).orElseThrow(() -> {
             log.error("Second user'{}' not found", username2);
             return new IllegalArgumentException("User not found: " + username2);
         });
-        if (user1.equals(user2)) {
+        if (userId1.equals(userId2)) {
             throw new IllegalArgumentException("Cannot create a private conversation with yourself.");
         }
-        var conversation = Conversation.builder().conversationType(ConversationType.PRIVATE).participants(Set.of(user1, user2)).build();
-        conversation.addParticipant(user1);
-        conversation.addParticipant(user2);
+        long low = Math.min(userId1, userId2);
+        long high = Math.max(userId1, userId2);
+        conversationRepository.lockPrivatePair(low, high);
+        var existing = conversationRepository.findPrivatePair(low, high);
+        if (existing.isPresent()) {
+            log.info("Found PRIVATE conversation with ID {} between '{}' and '{}'", existing.get().getId(), username1, username2);
+            return existing.get();
+        }
+
+        var user1 = userRepository.findByUsername(username1).orElseThrow(() -> new IllegalArgumentException("User not found: " + username1));
+        var user2 = userRepository.findByUsername(username2).orElseThrow(() -> new IllegalArgumentException("User not found: " + username2));
+        var conversation = Conversation.builder().conversationType(ConversationType.PRIVATE).participants(Set.of(user1, user2))
+                .privateUserLow(low).privateUserHigh(high).build();
         var saved = conversationRepository.save(conversation);
+        addMembers(saved);
         log.info("Created PRIVATE conversation with ID {} between '{}' and '{}'", saved.getId(), username1, username2);
         return saved;
     }
 
+    @Transactional
     public Conversation createGroupConversation(String groupName, List<String> usernames) {
         log.debug("Creating group conversation '{}' with users: {}", groupName, usernames);
 
@@ -60,10 +122,12 @@ public class MessagesService implements IMessageService {
         users.forEach(conversation::addParticipant);
 
         var saved = conversationRepository.save(conversation);
+        addMembers(saved);
         log.info("Created GROUP conversation '{}' with ID {} and {} participants", groupName, saved.getId(), users.size());
         return saved;
     }
 
+    @Transactional
     public void deleteConversation(Long conversationId) {
         log.debug("Attempting to delete conversation with ID {}", conversationId);
 
@@ -79,35 +143,67 @@ public class MessagesService implements IMessageService {
             conversation.removeParticipant(user);
         }
 
+        var messageIds = messagesRepository.findIdsByConversationId(conversationId);
+        conversationMemberRepository.deleteByConversationId(conversationId);
         conversationRepository.deleteById(conversationId);
+        afterCommit(() -> {
+            recentMessageCache.invalidate(conversationId);
+            conversationMembershipIndex.invalidate(conversationId);
+            messageSearchIndex.removeAll(messageIds);
+        });
         log.info("Deleted conversation with ID {}", conversationId);
     }
 
+    @Transactional
     public Message sendMessage(Long conversationId, String senderUsername, String content) {
-        log.debug("Sending message in conversation ID {} from user '{}'", conversationId, senderUsername);
+        return sendMessage(conversationId, senderUsername, content, null).message();
+    }
 
-        var conversation = conversationRepository.findById(conversationId).orElseThrow(() -> {
-            log.error("Conversation not found");
-            return new IllegalArgumentException("Conversation not found");
-        });
+    @Transactional
+    public SentMessage sendMessage(Long conversationId, String senderUsername, String content, String clientMessageId) {
+        log.debug("Sending message in conversation ID {} from user '{}' (client id: {})", conversationId, senderUsername, clientMessageId);
+
+        if (content == null || content.isBlank()) {
+            throw new IllegalArgumentException("Message text is required");
+        }
+        if (clientMessageId != null) {
+            if (clientMessageId.isBlank() || clientMessageId.length() > MAX_CLIENT_MESSAGE_ID_LENGTH) {
+                throw new IllegalArgumentException("Client message id must be 1 to " + MAX_CLIENT_MESSAGE_ID_LENGTH + " characters");
+            }
+            messagesRepository.lockTransactionKey(clientMessageKey(senderUsername, clientMessageId));
+            var existing = messagesRepository.findByClientMessageId(senderUsername, clientMessageId);
+            if (existing.isPresent()) {
+                if (!existing.get().getConversation().getId().equals(conversationId)) {
+                    throw new IllegalArgumentException("Client message id already used in another conversation");
+                }
+                log.info("Duplicate message '{}' from '{}' in conversation ID {}, returning message ID {}", clientMessageId, senderUsername, conversationId, existing.get().getId());
+                return new SentMessage(existing.get(), true);
+            }
+        }
 
-        var sender = userRepository.findByUsername(senderUsername).orElseThrow(() -> {
+        var sender = userRepository.findSenderByUsername(senderUsername).orElseThrow(() -> {
             log.error("Sender '{}' not found", senderUsername);
             return new IllegalArgumentException("User not found");
         });
 
-        if (!conversation.getParticipants().contains(sender)) {
+        if (!conversationMembershipIndex.isMember(conversationId, sender.getId())) {
             log.error("Sender is no part of conversation member");
             throw new IllegalArgumentException("Sender not found");
         }
 
-        var message = Message.builder().conversation(conversation).user(sender).text(content).build();
-        conversation.addMessage(message);
-        sender.addMessage(message);
+        var seq = conversationRepository.nextSeq(conversationId).orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        var message = Message.builder().conversation(conversationRepository.getReferenceById(conversationId)).user(sender).text(content).seq(seq).clientMessageId(clientMessageId).build();
 
         var saved = messagesRepository.save(message);
-        log.info("Message sent by '{}' in conversation ID {} (message ID: {})", senderUsername, conversationId, saved.getId());
-        return saved;
+        conversationRepository.recordLastMessage(conversationId, snippet(content), senderUsername, saved.getCreatedAt());
+        var senderId = sender.getId();
+        afterCommit(() -> {
+            readWatermarkStore.advance(conversationId, senderId, seq, null);
+            recentMessageCache.append(conversationId, saved);
+            messageSearchIndex.add(saved.getId(), conversationId, content);
+        });
+        log.info("Message sent by '{}' in conversation ID {} (message ID: {}, seq: {})", senderUsername, conversationId, saved.getId(), seq);
+        return new SentMessage(saved, false);
     }
 
     public void deleteMessage(Long messageId) {
@@ -120,10 +216,13 @@ public class MessagesService implements IMessageService {
 
         var message = messagesRepository.findById(messageId).orElseThrow(() -> new EntityNotFoundException("Message not found"));
 
+        var conversationId = message.getConversation().getId();
         message.getConversation().removeMessage(message);
         message.getUser().removeMessage(message);
 
         messagesRepository.deleteById(messageId);
+        recentMessageCache.remove(conversationId, messageId);
+        messageSearchIndex.remove(messageId);
 
         log.info("Deleted message with ID {}", messageId);
     }
@@ -140,16 +239,202 @@ public class MessagesService implements IMessageService {
         return result;
     }
 
-    public List<Message> getMessagesConversationId(Long conversationId) {
-        log.debug("Fetching messages for conversation ID {}", conversationId);
+    public List<Message> getMessagesConversationId(Long conversationId, Long before, Long after, Integer limit) {
+        log.debug("Fetching messages for conversation ID {}, before={}, after={}, limit={}", conversationId, before, after, limit);
+
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_MESSAGE_LIMIT : Math.min(limit, MAX_MESSAGE_LIMIT);
+        boolean cacheable = before == null && after == null && recentMessageCache.canCache(pageSize);
+        if (cacheable) {
+            var cached = recentMessageCache.newest(conversationId, pageSize);
+            if (cached.isPresent()) {
+                log.debug("Served {} messages of conversation ID {} from the recent message cache", cached.get().size(), conversationId);
+                return cached.get();
+            }
+        }
 
-        var conversation = conversationRepository.findById(conversationId).orElseThrow(() -> {
+        if (!conversationRepository.existsById(conversationId)) {
             log.error("Conversation with ID {} not found", conversationId);
-            return new IllegalArgumentException("Conversation not found");
-        });
+            throw new IllegalArgumentException("Conversation not found");
+        }
 
-        var result = messagesRepository.findByConversation(conversation);
+        List<Message> result;
+        if (cacheable) {
+            long knownLastSeq = conversationRepository.findLastSeq(conversationId).orElse(0L);
+            List<Message> recent = new ArrayList<>(messagesRepository.findBefore(conversationId, Long.MAX_VALUE, PageRequest.of(0, recentMessageCache.capacity())));
+            Collections.reverse(recent);
+            recentMessageCache.install(conversationId, recent, knownLastSeq);
+            recentMessageCache.confirm(conversationId, conversationRepository.findLastSeq(conversationId).orElse(0L));
+            result = recent.subList(Math.max(0, recent.size() - pageSize), recent.size());
+        } else if (after != null) {
+            result = messagesRepository.findAfter(conversationId, after, PageRequest.of(0, pageSize));
+        } else {
+            result = new ArrayList<>(messagesRepository.findBefore(conversationId, before == null ? Long.MAX_VALUE : before, PageRequest.of(0, pageSize)));
+            Collections.reverse(result);
+        }
         log.info("Found {} messages in conversation ID {}", result.size(), conversationId);
         return result;
     }
+
+    public List<InboxEntry> getInbox(String username, Long before, Long beforeId, Integer limit) {
+        log.debug("Fetching inbox for user '{}', before={}, beforeId={}, limit={}", username, before, beforeId, limit);
+
+        var userId = userRepository.findIdByUsername(username).orElseThrow(() -> {
+            log.error("User '{}' not found", username);
+            return new IllegalArgumentException("User not found");
+        });
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_INBOX_LIMIT : Math.min(limit, MAX_INBOX_LIMIT);
+        var result = conversationMemberRepository.inbox(userId,
+                        before == null ? Long.MAX_VALUE : before,
+                        before == null || beforeId == null ? Long.MAX_VALUE : beforeId,
+                        PageRequest.of(0, pageSize)).stream()
+                .map(entry -> entry.withLastReadSeq(readWatermarkStore.lastRead(entry.conversationId(), userId, entry.lastReadSeq())))
+                .toList();
+        log.info("Found {} inbox entries for user '{}'", result.size(), username);
+        return result;
+    }
+
+    public Optional<Long> markConversationRead(Long conversationId, String username, Long seq) {
+        var state = conversationMemberRepository.findReadState(conversationId, username)
+                .orElseThrow(() -> new IllegalArgumentException("User is not a member of this conversation"));
+        long readUpTo = seq == null ? state.lastSeq() : Math.min(seq, state.lastSeq());
+        boolean advanced = readWatermarkStore.advance(conversationId, state.userId(), readUpTo, state.lastReadSeq());
+        log.debug("User '{}' read conversation ID {} up to seq {} (advanced: {})", username, conversationId, readUpTo, advanced);
+        return advanced ? Optional.of(readUpTo) : Optional.empty();
+    }
+
+    public boolean isMember(Long conversationId, Long userId) {
+        return conversationMembershipIndex.isMember(conversationId, userId);
+    }
+
+    @Transactional
+    public void addParticipant(Long conversationId, String username) {
+        log.debug("Adding '{}' to conversation ID {}", username, conversationId);
+
+        var conversation = conversationRepository.findById(conversationId).orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        if (conversation.getConversationType() != ConversationType.GROUP) {
+            throw new IllegalArgumentException("Members can only be added to group conversations");
+        }
+        var userId = userRepository.findIdByUsername(username).orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+        conversationRepository.addParticipant(conversationId, userId);
+        conversationMemberRepository.insertIfAbsent(conversationId, userId, System.currentTimeMillis());
+        afterCommit(() -> conversationMembershipIndex.add(conversationId, userId));
+        log.info("Added '{}' to conversation ID {}", username, conversationId);
+    }
+
+    @Transactional
+    public void removeParticipant(Long conversationId, String username) {
+        log.debug("Removing '{}' from conversation ID {}", username, conversationId);
+
+        var userId = userRepository.findIdByUsername(username).orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+        if (conversationRepository.removeParticipant(conversationId, userId) == 0) {
+            throw new IllegalArgumentException("User is not a member of this conversation");
+        }
+        conversationMemberRepository.deleteMember(conversationId, userId);
+        afterCommit(() -> conversationMembershipIndex.remove(conversationId, userId));
+        log.info("Removed '{}' from conversation ID {}", username, conversationId);
+    }
+
+    public List<ConversationDelta> syncConversations(String username, Map<Long, Long> lastSeenSeqs) {
+        log.debug("Syncing conversations for user '{}' from {} known positions", username, lastSeenSeqs == null ? 0 : lastSeenSeqs.size());
+
+        var seqs = conversationRepository.findSeqsByUsername(username);
+        List<ConversationDelta> result = new ArrayList<>();
+        int budget = syncMaxTotal;
+        int fetched = 0;
+        for (var position : seqs) {
+            long lastSeen = lastSeenSeqs == null ? 0L : Math.max(0L, lastSeenSeqs.getOrDefault(position.conversationId(), 0L));
+            long missing = position.lastSeq() - lastSeen;
+            if (missing <= 0) {
+                continue;
+            }
+            if (missing > syncMaxPerConversation || missing > budget) {
+                result.add(new ConversationDelta(position.conversationId(), position.lastSeq(), true, List.of()));
+                continue;
+            }
+            var messages = messagesRepository.findAfter(position.conversationId(), lastSeen, PageRequest.of(0, (int) missing));
+            budget -= messages.size();
+            fetched += messages.size();
+            result.add(new ConversationDelta(position.conversationId(), position.lastSeq(), false, messages));
+        }
+        log.info("Synced {} messages across {} of {} conversations for user '{}'", fetched, result.size(), seqs.size(), username);
+        return result;
+    }
+
+    public List<Message> searchMessages(String username, String query, Long beforeId, Integer limit) {
+        log.debug("Searching messages of user '{}' for '{}', beforeId={}, limit={}", username, query, beforeId, limit);
+
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        var terms = MessageTokenizer.tokenize(query);
+        if (terms.size() > MAX_SEARCH_TERMS) {
+            throw new IllegalArgumentException("Search query may contain at most " + MAX_SEARCH_TERMS + " words");
+        }
+        userRepository.findIdByUsername(username).orElseThrow(() -> {
+            log.error("User '{}' not found", username);
+            return new IllegalArgumentException("User not found");
+        });
+
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        Set<Long> conversationIds = conversationRepository.findSeqsByUsername(username).stream()
+                .map(ConversationSeq::conversationId)
+                .collect(Collectors.toSet());
+        // Hits the database no longer has are dropped, so keep paging the index until the page
+        // is full or the index runs out; otherwise a page of stale hits would end the search.
+        List<Message> result = new ArrayList<>();
+        long cursor = beforeId == null ? Long.MAX_VALUE : beforeId;
+        while (result.size() < pageSize) {
+            int wanted = pageSize - result.size();
+            var ids = messageSearchIndex.search(terms, conversationIds, cursor, wanted);
+            if (ids.isEmpty()) {
+                break;
+            }
+            Map<Long, Message> messages = messagesRepository.findWithUserByIdIn(ids).stream()
+                    .filter(message -> conversationIds.contains(message.getConversation().getId()))
+                    .collect(Collectors.toMap(Message::getId, Function.identity()));
+            ids.stream().map(messages::get).filter(Objects::nonNull).forEach(result::add);
+            if (ids.size() < wanted) {
+                break;
+            }
+            cursor = ids.get(ids.size() - 1);
+        }
+        log.info("Found {} messages matching '{}' for user '{}'", result.size(), query, username);
+        return result;
+    }
+
+    private void addMembers(Conversation conversation) {
+        conversationMemberRepository.saveAll(conversation.getParticipants().stream()
+                .map(user -> ConversationMember.builder()
+                        .conversationId(conversation.getId())
+                        .userId(user.getId())
+                        .build())
+                .toList());
+        var userIds = conversation.getParticipants().stream().map(User::getId).toList();
+        afterCommit(() -> conversationMembershipIndex.put(conversation.getId(), userIds));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private long clientMessageKey(String username, String clientMessageId) {
+        return ((long) username.hashCode() << 32) ^ (clientMessageId.hashCode() & 0xFFFFFFFFL);
+    }
+
+    private String snippet(String content) {
+        return content.length() <= SNIPPET_LENGTH ? content : content.substring(0, SNIPPET_LENGTH - 1) + "\u2026";
+    }
 }
@@ -5,11 +5,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.interfaces.INotificationsService;
 import main.notification.Notification;
+import main.notification.NotificationRecipient;
 import main.notification.NotificationRepository;
 import main.users.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Slf4j
@@ -37,6 +39,17 @@ public class NotificationsService implements INotificationsService {
         return saved;
     }
 
+    @Transactional
+    public List<NotificationRecipient> addNotifications(Collection<Long> userIds, String message) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        long createdAt = System.currentTimeMillis();
+        int inserted = notificationRepository.insertForUsers(userIds, message, createdAt);
+        log.info("Added {} notifications: {}", inserted, message);
+        return notificationRepository.findRecipients(userIds, message, createdAt);
+    }
+
     public void deleteNotification(Long id) {
         log.info("Deleting notification with ID {}", id);
         var notification = notificationRepository.findById(id).orElseThrow(() -> {
@@ -5,23 +5,51 @@ import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.friends.Enums.FriendshipRequestType;
+import main.friends.FriendsRepository;
 import main.interfaces.IPostService;
 import main.posts.*;
 import main.posts.Enums.ContentType;
+import main.services.feed.PostScoreStore;
+import main.services.feed.Timeline;
+import main.services.feed.TimelineStore;
+import main.services.likes.LikeCounterStore;
+import main.services.likes.LikedPostsIndex;
 import main.users.UserRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PostService implements IPostService {
 
+    private static final int DEFAULT_FEED_LIMIT = 20;
+    private static final int MAX_FEED_LIMIT = 50;
+    private static final int DEFAULT_COMMENT_LIMIT = 20;
+    private static final int MAX_COMMENT_LIMIT = 100;
+
     private final UserRepository userRepository;
     private final PostsRepository postsRepository;
     private final LikeRepository likeRepository;
     private final CommentRepository commentRepository;
+    private final FriendsRepository friendsRepository;
+    private final TimelineStore timelineStore;
+    private final PostScoreStore postScoreStore;
+    private final LikeCounterStore likeCounterStore;
+    private final LikedPostsIndex likedPostsIndex;
 
     @Override
     public List<Like> foundLikesByUser(Long userId) {
@@ -36,73 +64,69 @@ public class PostService implements IPostService {
 
 
     @Override
-    public Like addLike(Long userId, Long postId) {
+    public boolean addLike(Long userId, Long postId) {
         log.info("Attempting to add like. userId={}, postId={}", userId, postId);
-        var user = userRepository.findById(userId).orElseThrow(() -> {
-            log.warn("User with ID {} not found while adding like", userId);
-            return new EntityExistsException("User not found");
-        });
-
-        var post = postsRepository.findById(postId).orElseThrow(() -> {
-            log.warn("Post with ID {} not found while adding like", postId);
-            return new EntityExistsException("Post not found");
-        });
-
-        if (likeRepository.existsLike(post, user)) {
-            log.warn("User {} already liked post {}", userId, postId);
-            throw new IllegalArgumentException("Already liked");
+        boolean added;
+        try {
+            added = likeRepository.insertIfAbsent(postId, userId, System.currentTimeMillis()) > 0;
+        } catch (DataIntegrityViolationException ex) {
+            log.warn("User {} or post {} not found while adding like", userId, postId);
+            throw new EntityNotFoundException("User or post not found");
+        }
+        if (!added) {
+            log.info("User {} already liked post {}", userId, postId);
+            return false;
         }
-        Like newLike = Like.builder().user(user).post(post).build();
-        user.addLike(newLike);
-        post.addLike(newLike);
-        Like savedLike = likeRepository.save(newLike);
-        log.info("Like saved successfully. LikeID={}, userId={}, postId={}", savedLike.getId(), userId, postId);
-        return savedLike;
+        likeCounterStore.add(postId, 1);
+        likedPostsIndex.add(userId, postId);
+        postScoreStore.recordLike(postId, userId, 1);
+        log.info("Like saved successfully. userId={}, postId={}", userId, postId);
+        return true;
     }
 
     @Override
-    public Like dislike(Long postId, Long userId) {
+    public boolean dislike(Long postId, Long userId) {
         log.info("Attempting to dislike post. userId={}, postId={}", userId, postId);
-        var user = userRepository.findById(userId).orElseThrow(() -> {
-            log.warn("User with ID {} not found while disliking", userId);
-            return new EntityExistsException("User not found");
-        });
-
-        var post = postsRepository.findById(postId).orElseThrow(() -> {
-            log.warn("Post with ID {} not found while disliking", postId);
-            return new EntityExistsException("Post not found");
-        });
-
-        if (!likeRepository.existsLike(post, user)) {
-            log.warn("User {} has not liked post {} yet", userId, postId);
-            throw new IllegalArgumentException("Not liked yet");
+        boolean removed = likeRepository.deleteByPostIdAndUserId(postId, userId) > 0;
+        if (!removed) {
+            log.info("User {} has not liked post {}", userId, postId);
+            return false;
         }
-
-        var likeFound = likeRepository.foundLike(post, user).orElseThrow(() -> {
-            log.error("Like not found for user {} and post {} even though existsLike returned true", userId, postId);
-            return new EntityExistsException("Like not found");
-        });
-
-        user.removeLike(likeFound);
-        post.removeLike(likeFound);
-        likeRepository.deleteById(likeFound.getId());
+        likeCounterStore.add(postId, -1);
+        likedPostsIndex.remove(userId, postId);
+        postScoreStore.recordLike(postId, userId, -1);
         log.info("Dislike operation completed. userId={}, postId={}", userId, postId);
-        return likeFound;
+        return true;
     }
 
     @Override
     public Long getCountLikes(Long postId) {
         log.info("Counting likes for postId={}", postId);
-        var post = postsRepository.findById(postId).orElseThrow(() -> {
+        Long count = likeCounterStore.counts(List.of(postId)).get(postId);
+        if (count == null) {
             log.warn("Post with ID {} not found while counting likes", postId);
-            return new EntityExistsException("Post not found");
-        });
-        Long count = likeRepository.countLikesPerPost(post);
+            throw new EntityExistsException("Post not found");
+        }
         log.info("Post {} has {} likes", postId, count);
         return count;
     }
 
     @Override
+    public Map<Long, Long> getCountLikes(Collection<Long> postIds) {
+        log.info("Counting likes for {} posts", postIds.size());
+        var counts = likeCounterStore.counts(postIds);
+        log.info("Found like counts for {} of {} posts", counts.size(), postIds.size());
+        return counts;
+    }
+
+    @Override
+    public Set<Long> likedAmong(Long userId, Collection<Long> postIds) {
+        log.info("Checking likes of user {} among {} posts", userId, postIds.size());
+        return likedPostsIndex.likedAmong(userId, postIds);
+    }
+
+    @Override
+    @Transactional
     public Comment addComment(Long postId, Long userId, String text) {
         log.info("Attempting to add comment. userId={}, postId={}, text='{}'", userId, postId, text);
         var user = userRepository.findById(userId).orElseThrow(() -> {
@@ -120,27 +144,32 @@ public class PostService implements IPostService {
             throw new IllegalArgumentException("Comment text is empty");
         }
 
-        Comment comment = Comment.builder().user(user).post(post).text(text).build();
-        user.addComment(comment);
-        post.addComment(comment);
-        Comment savedComment = commentRepository.save(comment);
+        Comment savedComment = commentRepository.save(Comment.builder().user(user).post(post).text(text).build());
+        postsRepository.addCommentCount(postId, 1);
+        postScoreStore.recordComment(postId, userId, 1);
         log.info("Comment saved successfully. commentId={}, userId={}, postId={}", savedComment.getId(), userId, postId);
         return savedComment;
     }
 
     @Override
-    public List<Comment> getCommentsPerPost(Long postId) {
-        log.info("Fetching comments for postId={}", postId);
-        var post = postsRepository.findById(postId).orElseThrow(() -> {
+    @Transactional(readOnly = true)
+    public List<CommentView> getCommentsPerPost(Long postId, Long beforeCreatedAt, Long beforeId, Integer limit) {
+        log.info("Fetching comments for postId={}, beforeCreatedAt={}, beforeId={}, limit={}", postId, beforeCreatedAt, beforeId, limit);
+        if (!postsRepository.existsById(postId)) {
             log.warn("Post with ID {} not found while fetching comments", postId);
-            return new EntityExistsException("Post not found");
-        });
-        List<Comment> comments = commentRepository.commentsPerPost(post);
+            throw new EntityNotFoundException("Post not found");
+        }
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_COMMENT_LIMIT : Math.min(limit, MAX_COMMENT_LIMIT);
+        List<CommentView> comments = commentRepository.commentsPage(postId,
+                beforeCreatedAt == null ? Long.MAX_VALUE : beforeCreatedAt,
+                beforeId == null ? Long.MAX_VALUE : beforeId,
+                PageRequest.of(0, pageSize));
         log.info("Found {} comments for post {}", comments.size(), postId);
         return comments;
     }
 
     @Override
+    @Transactional
     public Comment deleteComment(Long id) {
         log.info("Attempting to delete comment with ID: {}", id);
         var commentDeleted = commentRepository.findById(id).orElseThrow(() -> {
@@ -149,17 +178,18 @@ public class PostService implements IPostService {
         });
         var user = commentDeleted.getUser();
         var post = commentDeleted.getPost();
-        user.removeComment(commentDeleted);
-        post.removeComment(commentDeleted);
-        commentRepository.deleteById(id);
+        commentRepository.delete(commentDeleted);
+        postsRepository.addCommentCount(post.getId(), -1);
+        postScoreStore.recordComment(post.getId(), user.getId(), -1);
         log.info("Successfully deleted comment with ID: {}", id);
         return commentDeleted;
     }
 
     @Override
-    public List<Post> getUserPosts(String username) {
+    @Transactional(readOnly = true)
+    public List<PostView> getUserPosts(String username) {
         log.info("Fetching posts for user: {}", username);
-        List<Post> posts = postsRepository.findByUsername(username);
+        List<PostView> posts = postsRepository.findViewsByUsername(username);
         log.info("Found {} posts for user '{}'", posts.size(), username);
         return posts;
     }
@@ -199,10 +229,80 @@ public class PostService implements IPostService {
     }
 
     @Override
-    public List<Post> getFeed(String username) {
-        log.info("Fetching feed for user: {}", username);
-        var posts = postsRepository.feedByUsername(username, FriendshipRequestType.Accepted);
+    @Transactional(readOnly = true)
+    public List<PostView> getFeed(String username, Long before, Integer limit) {
+        log.info("Fetching feed for user: {}, before={}, limit={}", username, before, limit);
+        var userId = findUserId(username);
+        var cursor = before == null ? Long.MAX_VALUE : before;
+        var pageSize = clampFeedLimit(limit);
+
+        var timeline = timelineStore.find(userId).orElseGet(() -> rebuildTimeline(userId, username));
+        var ids = Arrays.stream(timelineStore.page(timeline, cursor, pageSize)).boxed().toList();
+
+        List<PostView> posts = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            posts.addAll(postsRepository.findViewsByIdIn(ids));
+            posts.sort(Comparator.comparing(PostView::id).reversed());
+        }
+        if (ids.size() < pageSize && timeline.isTruncated()) {
+            var olderThan = ids.isEmpty() ? cursor : ids.getLast();
+            log.debug("Feed page for '{}' runs past the timeline, reading older posts before {}", username, olderThan);
+            var older = PageRequest.of(0, pageSize - ids.size());
+            posts.addAll(postsRepository.feedViewsByUsername(username, FriendshipRequestType.Accepted, olderThan, older));
+        }
         log.info("Found {} feed for user '{}'", posts.size(), username);
         return posts;
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostView> getRankedFeed(String username, Integer limit) {
+        log.info("Fetching ranked feed for user: {}, limit={}", username, limit);
+        var userId = findUserId(username);
+        var timeline = timelineStore.find(userId).orElseGet(() -> rebuildTimeline(userId, username));
+        var candidates = timelineStore.page(timeline, Long.MAX_VALUE, timelineStore.capacity());
+
+        var unseeded = postScoreStore.missing(Arrays.stream(candidates).boxed().toList());
+        if (!unseeded.isEmpty()) {
+            postScoreStore.seed(postsRepository.findStatsByIdIn(unseeded));
+        }
+
+        var ranked = postScoreStore.topK(userId, candidates, clampFeedLimit(limit));
+        if (ranked.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, PostView> views = postsRepository.findViewsByIdIn(ranked).stream()
+                .collect(Collectors.toMap(PostView::id, Function.identity()));
+        var posts = ranked.stream().map(views::get).filter(Objects::nonNull).toList();
+        log.info("Ranked {} of {} candidate posts for user '{}'", posts.size(), candidates.length, username);
+        return posts;
+    }
+
+    private Long findUserId(String username) {
+        return userRepository.findIdByUsername(username).orElseThrow(() -> {
+            log.warn("User '{}' not found while fetching feed", username);
+            return new EntityNotFoundException("User not found");
+        });
+    }
+
+    private Timeline rebuildTimeline(Long userId, String username) {
+        log.info("Rebuilding feed timeline for user '{}'", username);
+        var page = PageRequest.of(0, timelineStore.capacity() + 1);
+        timelineStore.beginLoad(userId);
+        try {
+            var ids = postsRepository.feedIdsByUsername(username, FriendshipRequestType.Accepted, page);
+            var friendIds = friendsRepository.friendIdsByUser(userId, FriendshipRequestType.Accepted);
+            return timelineStore.load(userId, ids, friendIds);
+        } catch (RuntimeException ex) {
+            timelineStore.cancelLoad(userId);
+            throw ex;
+        }
+    }
+
+    private int clampFeedLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_FEED_LIMIT;
+        }
+        return Math.min(limit, MAX_FEED_LIMIT);
+    }
 }
@@ -4,6 +4,9 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import main.interfaces.IUserService;
+import main.messages.MessagesRepository;
+import main.services.messages.RecentMessageCache;
+import main.services.search.MessageSearchIndex;
 import main.users.User;
 import main.users.UserRepository;
 import org.springframework.stereotype.Service;
@@ -17,6 +20,9 @@ import java.util.Optional;
 public class UserService implements IUserService {
 
     private final UserRepository userRepository;
+    private final RecentMessageCache recentMessageCache;
+    private final MessagesRepository messagesRepository;
+    private final MessageSearchIndex messageSearchIndex;
 
     public List<User> findByLastName(String lastName) {
         log.info("Searching users with last name '{}'", lastName);
@@ -38,6 +44,10 @@ public class UserService implements IUserService {
         return userRepository.findByUsername(username);
     }
 
+    public Optional<Long> findIdByUsername(String username) {
+        return userRepository.findIdByUsername(username);
+    }
+
     public Optional<User> findByPhone(String phone) {
         log.info("Looking up user by phone '{}'", phone);
         return userRepository.findByPhone(phone);
@@ -83,6 +93,7 @@ public class UserService implements IUserService {
         user.setBio(bio);
         user.setFirstName(firstName);
 
+        recentMessageCache.updateSender(user);
         log.info("User '{}' updated successfully", username);
         return userRepository.findByUsername(username).orElseThrow(() -> new IllegalArgumentException("Not found user"));
     }
@@ -94,7 +105,10 @@ public class UserService implements IUserService {
             return new IllegalArgumentException("Not found user");
         });
 
+        var messageIds = messagesRepository.findIdsByUserId(user.getId());
         userRepository.deleteById(user.getId());
+        recentMessageCache.invalidateAll();
+        messageSearchIndex.removeAll(messageIds);
         log.info("User '{}' deleted successfully", username);
         return user;
     }
@@ -109,6 +123,8 @@ public class UserService implements IUserService {
         });
 
         user.setProfilePicture(url);
+        user.setProfilePictureVariants(null);
+        recentMessageCache.updateSender(user);
         log.info("Profile picture updated successfully for user '{}'", username);
         return user;
     }
@@ -123,6 +139,8 @@ public class UserService implements IUserService {
         });
 
         user.setProfilePicture(null);
+        user.setProfilePictureVariants(null);
+        recentMessageCache.updateSender(user);
         log.info("Profile picture removed successfully for user '{}'", username);
         return user;
     }
@@ -0,0 +1,56 @@
+package main.services.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class FeedMetrics {
+
+    private final LongAdder pushedPosts = new LongAdder();
+    private final LongAdder pulledPosts = new LongAdder();
+    private final LongAdder timelineWrites = new LongAdder();
+    private final LongAdder pullMerges = new LongAdder();
+    private final LongAdder timelineRebuilds = new LongAdder();
+
+    public void recordPush(Long postId, int readers, int written) {
+        pushedPosts.increment();
+        timelineWrites.add(written);
+        log.info("Post {} fanned out by push: {} readers, {} timelines written", postId, readers, written);
+    }
+
+    public void recordPull(Long postId, int readers) {
+        pulledPosts.increment();
+        log.info("Post {} kept for pull: {} readers merge it at read time", postId, readers);
+    }
+
+    public void recordPullMerges(int authors) {
+        pullMerges.add(authors);
+    }
+
+    public void recordRebuild() {
+        timelineRebuilds.increment();
+    }
+
+    public long getPushedPosts() {
+        return pushedPosts.sum();
+    }
+
+    public long getPulledPosts() {
+        return pulledPosts.sum();
+    }
+
+    public long getTimelineWrites() {
+        return timelineWrites.sum();
+    }
+
+    public long getPullMerges() {
+        return pullMerges.sum();
+    }
+
+    public long getTimelineRebuilds() {
+        return timelineRebuilds.sum();
+    }
+}
@@ -0,0 +1,99 @@
+package main.services.feed;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity ring of primitive longs kept in ascending order, so a timeline of post ids
+ * costs 8 bytes per entry and reads newest-first without boxing. When full, the oldest id is
+ * dropped and the buffer is marked truncated.
+ */
+public class LongRingBuffer {
+
+    private final long[] values;
+    private int head;
+    private int size;
+    private boolean truncated;
+
+    public LongRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.values = new long[capacity];
+    }
+
+    public static LongRingBuffer of(long[] newestFirst, int capacity, boolean truncated) {
+        var buffer = new LongRingBuffer(capacity);
+        for (int i = newestFirst.length - 1; i >= 0; i--) {
+            buffer.push(newestFirst[i]);
+        }
+        buffer.truncated |= truncated;
+        return buffer;
+    }
+
+    public synchronized void push(long value) {
+        int position = size - 1;
+        while (position >= 0 && at(position) > value) {
+            position--;
+        }
+        if (position >= 0 && at(position) == value) {
+            return;
+        }
+        int insertAt = position + 1;
+
+        if (size == values.length) {
+            truncated = true;
+            if (insertAt == 0) {
+                return;
+            }
+            size--;
+            insertAt--;
+        }
+
+        for (int i = size; i > insertAt; i--) {
+            set(i, at(i - 1));
+        }
+        set(insertAt, value);
+        size++;
+        head = (head + 1) % values.length;
+    }
+
+    public synchronized long[] before(long cursor, int limit) {
+        long[] page = new long[Math.min(limit, size)];
+        int count = 0;
+        for (int i = size - 1; i >= 0 && count < page.length; i--) {
+            long value = at(i);
+            if (value < cursor) {
+                page[count++] = value;
+            }
+        }
+        return count == page.length ? page : Arrays.copyOf(page, count);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    private long at(int logicalIndex) {
+        return values[physical(logicalIndex)];
+    }
+
+    private void set(int logicalIndex, long value) {
+        values[physical(logicalIndex)] = value;
+    }
+
+    private int physical(int logicalIndex) {
+        int start = head - size;
+        if (start < 0) {
+            start += values.length;
+        }
+        return (start + logicalIndex) % values.length;
+    }
+}
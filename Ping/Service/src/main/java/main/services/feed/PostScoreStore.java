@@ -0,0 +1,155 @@
+package main.services.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import main.posts.PostStatsView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Engagement counters per post and interaction counts per (reader, author), updated as likes
+ * and comments are written. Ranking a candidate is then a handful of arithmetic operations
+ * instead of counting rows per request. Both maps are bounded; once full, an arbitrary entry is
+ * evicted and only loses its ranking boost until it is seeded or interacted with again.
+ */
+@Slf4j
+@Component
+public class PostScoreStore {
+
+    private static final double LIKE_WEIGHT = 1.0;
+    private static final double COMMENT_WEIGHT = 3.0;
+    private static final double AFFINITY_WEIGHT = 0.5;
+    private static final double GRAVITY = 1.5;
+    private static final double MILLIS_PER_HOUR = 3_600_000d;
+
+    @Value("${feed.ranking.max-posts:200000}")
+    private int maxPosts;
+
+    @Value("${feed.ranking.max-authors-per-reader:500}")
+    private int maxAuthorsPerReader;
+
+    @Value("${feed.ranking.max-readers:50000}")
+    private int maxReaders;
+
+    private final Map<Long, PostStats> posts = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, AtomicInteger>> affinities = new ConcurrentHashMap<>();
+
+    public void recordLike(Long postId, Long readerId, int delta) {
+        var stats = posts.get(postId);
+        if (stats == null) {
+            return;
+        }
+        stats.likes.addAndGet(delta);
+        recordInteraction(readerId, stats.authorId, delta);
+    }
+
+    public void recordComment(Long postId, Long readerId, int delta) {
+        var stats = posts.get(postId);
+        if (stats == null) {
+            return;
+        }
+        stats.comments.addAndGet(delta);
+        recordInteraction(readerId, stats.authorId, delta);
+    }
+
+    public List<Long> missing(Collection<Long> postIds) {
+        return postIds.stream().filter(id -> !posts.containsKey(id)).toList();
+    }
+
+    public void seed(List<PostStatsView> views) {
+        for (var view : views) {
+            if (posts.size() >= maxPosts) {
+                evictOne(posts);
+            }
+            posts.putIfAbsent(view.postId(), new PostStats(view.authorId(),
+                    view.createdAt() == null ? 0L : view.createdAt(), view.likes(), view.comments()));
+        }
+        log.debug("Seeded engagement stats for {} posts", views.size());
+    }
+
+    public List<Long> topK(Long readerId, long[] candidates, int k) {
+        var readerAffinity = affinities.getOrDefault(readerId, Map.of());
+        long now = System.currentTimeMillis();
+
+        var heap = new PriorityQueue<ScoredPost>(k + 1, Comparator.comparingDouble(ScoredPost::score));
+        for (long candidate : candidates) {
+            var stats = posts.get(candidate);
+            if (stats == null) {
+                continue;
+            }
+            heap.offer(new ScoredPost(candidate, score(stats, readerAffinity, now)));
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        return heap.stream()
+                .sorted(Comparator.comparingDouble(ScoredPost::score).reversed())
+                .map(ScoredPost::postId)
+                .toList();
+    }
+
+    private double score(PostStats stats, Map<Long, AtomicInteger> readerAffinity, long now) {
+        double engagement = 1 + Math.log1p(LIKE_WEIGHT * Math.max(0, stats.likes.get())
+                + COMMENT_WEIGHT * Math.max(0, stats.comments.get()));
+        var interactions = readerAffinity.get(stats.authorId);
+        double affinity = 1 + AFFINITY_WEIGHT * Math.log1p(interactions == null ? 0 : Math.max(0, interactions.get()));
+        double ageHours = Math.max(0, now - stats.createdAt) / MILLIS_PER_HOUR;
+        return engagement * affinity / Math.pow(ageHours + 2, GRAVITY);
+    }
+
+    private void recordInteraction(Long readerId, Long authorId, int delta) {
+        if (readerId == null || authorId == null || readerId.equals(authorId)) {
+            return;
+        }
+        var readerAffinity = affinities.get(readerId);
+        if (readerAffinity == null) {
+            if (delta <= 0) {
+                return;
+            }
+            if (affinities.size() >= maxReaders) {
+                evictOne(affinities);
+            }
+            readerAffinity = affinities.computeIfAbsent(readerId, id -> new ConcurrentHashMap<>());
+        }
+        var interactions = readerAffinity.get(authorId);
+        if (interactions == null) {
+            if (delta <= 0 || readerAffinity.size() >= maxAuthorsPerReader) {
+                return;
+            }
+            interactions = readerAffinity.computeIfAbsent(authorId, id -> new AtomicInteger());
+        }
+        interactions.addAndGet(delta);
+    }
+
+    private static void evictOne(Map<Long, ?> map) {
+        var iterator = map.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private record ScoredPost(Long postId, double score) {
+    }
+
+    private static final class PostStats {
+        private final Long authorId;
+        private final long createdAt;
+        private final AtomicInteger likes;
+        private final AtomicInteger comments;
+
+        private PostStats(Long authorId, long createdAt, long likes, long comments) {
+            this.authorId = authorId;
+            this.createdAt = createdAt;
+            this.likes = new AtomicInteger((int) likes);
+            this.comments = new AtomicInteger((int) comments);
+        }
+    }
+}
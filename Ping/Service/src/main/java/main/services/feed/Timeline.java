@@ -0,0 +1,31 @@
+package main.services.feed;
+
+import java.util.Arrays;
+
+/**
+ * A reader's pushed post ids plus the sorted ids of their accepted friends, which is what
+ * lets the read path find the pull-mode authors whose recent posts must be merged in.
+ */
+public class Timeline {
+
+    private final LongRingBuffer posts;
+    private final long[] friendIds;
+
+    public Timeline(LongRingBuffer posts, long[] friendIds) {
+        this.posts = posts;
+        this.friendIds = friendIds.clone();
+        Arrays.sort(this.friendIds);
+    }
+
+    public LongRingBuffer posts() {
+        return posts;
+    }
+
+    public boolean isFriend(long userId) {
+        return Arrays.binarySearch(friendIds, userId) >= 0;
+    }
+
+    public boolean isTruncated() {
+        return posts.isTruncated();
+    }
+}
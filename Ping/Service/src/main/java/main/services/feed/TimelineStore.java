@@ -0,0 +1,153 @@
+package main.services.feed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+/**
+ * Per-user home timelines of friend post ids, filled by fan-out on write and rebuilt from the
+ * database on a miss. Only timelines already in memory receive pushes; a missing one is
+ * rebuilt from the feed query. Posts pushed while that query runs are buffered and merged into
+ * the ring when it is installed, so a rebuild cannot miss them.
+ * <p>
+ * Authors with at least {@code feed.fanout.pull-threshold} friends are not pushed: their
+ * recent post ids are kept in a per-author ring and merged into each friend's page on read.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TimelineStore {
+
+    private final FeedMetrics feedMetrics;
+
+    @Value("${feed.timeline.capacity:500}")
+    private int capacity;
+
+    @Value("${feed.timeline.max-users:50000}")
+    private int maxUsers;
+
+    @Value("${feed.fanout.pull-threshold:5000}")
+    private int pullThreshold;
+
+    @Value("${feed.fanout.author-capacity:200}")
+    private int authorCapacity;
+
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Map<Long, LongRingBuffer> pullAuthors = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> pendingPushes = new ConcurrentHashMap<>();
+
+    public Optional<Timeline> find(Long userId) {
+        return Optional.ofNullable(timelines.get(userId));
+    }
+
+    public void beginLoad(Long userId) {
+        pendingPushes.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    public void cancelLoad(Long userId) {
+        pendingPushes.remove(userId);
+    }
+
+    public Timeline load(Long userId, List<Long> newestFirstIds, List<Long> friendIds) {
+        boolean truncated = newestFirstIds.size() > capacity;
+        long[] ids = newestFirstIds.stream().limit(capacity).mapToLong(Long::longValue).toArray();
+        var timeline = new Timeline(LongRingBuffer.of(ids, capacity, truncated),
+                friendIds.stream().mapToLong(Long::longValue).toArray());
+        if (timelines.size() >= maxUsers) {
+            evictOne();
+        }
+        var existing = timelines.putIfAbsent(userId, timeline);
+        var installed = existing != null ? existing : timeline;
+        var pushed = pendingPushes.remove(userId);
+        if (pushed != null) {
+            pushed.forEach(installed.posts()::push);
+        }
+        feedMetrics.recordRebuild();
+        log.debug("Loaded timeline for user {} with {} posts (truncated={}, pushed during load={})",
+                userId, ids.length, truncated, pushed == null ? 0 : pushed.size());
+        return installed;
+    }
+
+    public boolean isPullAuthor(int friendCount) {
+        return friendCount >= pullThreshold;
+    }
+
+    public void fanOut(Long postId, Long authorId, Collection<Long> readerIds) {
+        if (isPullAuthor(readerIds.size())) {
+            pullAuthors.computeIfAbsent(authorId, id -> new LongRingBuffer(authorCapacity)).push(postId);
+            feedMetrics.recordPull(postId, readerIds.size());
+            return;
+        }
+
+        int written = 0;
+        for (Long readerId : readerIds) {
+            var timeline = timelines.get(readerId);
+            if (timeline != null) {
+                timeline.posts().push(postId);
+                written++;
+                continue;
+            }
+            var pending = pendingPushes.get(readerId);
+            if (pending != null) {
+                pending.add(postId);
+                timeline = timelines.get(readerId);
+                if (timeline != null) {
+                    timeline.posts().push(postId);
+                }
+            }
+        }
+        feedMetrics.recordPush(postId, readerIds.size(), written);
+    }
+
+    public long[] page(Timeline timeline, long cursor, int limit) {
+        long[] page = timeline.posts().before(cursor, limit);
+        int merged = 0;
+        for (var author : pullAuthors.entrySet()) {
+            if (!timeline.isFriend(author.getKey())) {
+                continue;
+            }
+            page = LongStream.concat(Arrays.stream(page), Arrays.stream(author.getValue().before(cursor, limit)))
+                    .distinct()
+                    .toArray();
+            merged++;
+        }
+        if (merged == 0) {
+            return page;
+        }
+        feedMetrics.recordPullMerges(merged);
+        Arrays.sort(page);
+        long[] newestFirst = new long[Math.min(limit, page.length)];
+        for (int i = 0; i < newestFirst.length; i++) {
+            newestFirst[i] = page[page.length - 1 - i];
+        }
+        return newestFirst;
+    }
+
+    public void invalidate(Long userId) {
+        if (timelines.remove(userId) != null) {
+            log.debug("Invalidated timeline for user {}", userId);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private void evictOne() {
+        var iterator = timelines.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
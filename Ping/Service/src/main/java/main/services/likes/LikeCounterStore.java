@@ -0,0 +1,156 @@
+package main.services.likes;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.posts.PostCount;
+import main.posts.PostsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory like counts per post, seeded from {@code posts.like_count} and written back as
+ * batched deltas. Counters are striped {@link LongAdder}s, so concurrent likes on the same
+ * post do not contend on a single row or cache line. Increments and evictions both go through
+ * {@code computeIfPresent}, so a counter is never evicted between being read and updated.
+ * <p>
+ * Unflushed deltas live only in this process, so the store assumes a single application
+ * instance. The startup reconcile of {@code like_count} overwrites the column from the likes
+ * table and must be disabled with {@code likes.counter.reconcile-on-startup=false} when other
+ * instances may be writing.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeCounterStore {
+
+    private static final String FLUSH_SQL = "update posts set like_count = like_count + ? where id = ?";
+
+    private final PostsRepository postsRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${likes.counter.max-posts:200000}")
+    private int maxPosts;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public void add(Long postId, long delta) {
+        if (increment(postId, delta)) {
+            return;
+        }
+        seed(List.of(postId));
+        if (!increment(postId, delta)) {
+            log.warn("Like count change for unknown post {} ignored", postId);
+        }
+    }
+
+    public Map<Long, Long> counts(Collection<Long> postIds) {
+        var missing = postIds.stream().filter(id -> !counters.containsKey(id)).distinct().toList();
+        if (!missing.isEmpty()) {
+            seed(missing);
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        for (Long postId : postIds) {
+            var counter = counters.get(postId);
+            if (counter != null) {
+                counts.put(postId, counter.total.sum());
+            }
+        }
+        return counts;
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${likes.counter.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            evictClean();
+            return;
+        }
+        List<Counter> flushed = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (var iterator = dirty.iterator(); iterator.hasNext(); ) {
+            Long postId = iterator.next();
+            iterator.remove();
+            var counter = counters.get(postId);
+            if (counter == null) {
+                continue;
+            }
+            long delta = counter.total.sum() - counter.persisted.get();
+            if (delta != 0) {
+                flushed.add(counter);
+                batch.add(new Object[]{delta, postId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            for (int i = 0; i < batch.size(); i++) {
+                flushed.get(i).persisted.addAndGet((Long) batch.get(i)[0]);
+            }
+            log.debug("Flushed like counts for {} posts", batch.size());
+        } catch (Exception ex) {
+            log.error("Failed to flush like counts for {} posts, retrying on next flush: {}", batch.size(), ex.getMessage(), ex);
+            batch.forEach(row -> dirty.add((Long) row[1]));
+        }
+        evictClean();
+    }
+
+    private boolean increment(Long postId, long delta) {
+        return counters.computeIfPresent(postId, (id, counter) -> {
+            counter.total.add(delta);
+            dirty.add(id);
+            return counter;
+        }) != null;
+    }
+
+    private void seed(List<Long> postIds) {
+        for (PostCount count : postsRepository.findLikeCountsByIdIn(postIds)) {
+            counters.putIfAbsent(count.postId(), new Counter(count.count()));
+        }
+    }
+
+    private void evictClean() {
+        if (counters.size() <= maxPosts) {
+            return;
+        }
+        int excess = counters.size() - maxPosts;
+        for (var iterator = counters.keySet().iterator(); iterator.hasNext() && excess > 0; ) {
+            Long postId = iterator.next();
+            boolean[] evicted = new boolean[1];
+            counters.computeIfPresent(postId, (id, counter) -> {
+                evicted[0] = !dirty.contains(id) && counter.total.sum() == counter.persisted.get();
+                return evicted[0] ? null : counter;
+            });
+            if (evicted[0]) {
+                excess--;
+            }
+        }
+    }
+
+    private static final class Counter {
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong persisted;
+
+        private Counter(Long seed) {
+            long value = seed == null ? 0 : seed;
+            total.add(value);
+            persisted = new AtomicLong(value);
+        }
+    }
+}
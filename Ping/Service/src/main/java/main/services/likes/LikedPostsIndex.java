@@ -0,0 +1,133 @@
+package main.services.likes;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.posts.LikeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user {@link LongBitmap} of liked post ids, loaded on first read and kept current on
+ * like/unlike. Updates for a user that is not loaded are dropped; the next load reads them from
+ * the database. The load query runs outside the map; likes and unlikes that arrive while it runs
+ * are queued and replayed in order before the bitmap is installed, so none are lost.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikedPostsIndex {
+
+    private final LikeRepository likeRepository;
+
+    @Value("${likes.liked-index.max-users:20000}")
+    private int maxUsers;
+
+    private final Map<Long, LongBitmap> bitmaps = new ConcurrentHashMap<>();
+    private final Map<Long, PendingLoad> loading = new ConcurrentHashMap<>();
+
+    public Set<Long> likedAmong(Long userId, Collection<Long> postIds) {
+        Set<Long> liked = new HashSet<>();
+        if (postIds.isEmpty()) {
+            return liked;
+        }
+        var bitmap = bitmaps.get(userId);
+        if (bitmap == null) {
+            bitmap = load(userId);
+        }
+        for (Long postId : postIds) {
+            if (bitmap.contains(postId)) {
+                liked.add(postId);
+            }
+        }
+        return liked;
+    }
+
+    public void add(Long userId, Long postId) {
+        update(userId, postId, true);
+    }
+
+    public void remove(Long userId, Long postId) {
+        update(userId, postId, false);
+    }
+
+    private void update(Long userId, long postId, boolean liked) {
+        if (apply(userId, postId, liked)) {
+            return;
+        }
+        var pending = loading.get(userId);
+        if (pending == null) {
+            return;
+        }
+        synchronized (pending) {
+            if (!pending.installed) {
+                pending.updates.add(liked ? postId : -postId);
+                return;
+            }
+        }
+        apply(userId, postId, liked);
+    }
+
+    private boolean apply(Long userId, long postId, boolean liked) {
+        return bitmaps.computeIfPresent(userId, (id, bitmap) -> {
+            if (liked) {
+                bitmap.add(postId);
+            } else {
+                bitmap.remove(postId);
+            }
+            return bitmap;
+        }) != null;
+    }
+
+    private LongBitmap load(Long userId) {
+        var pending = loading.computeIfAbsent(userId, id -> new PendingLoad());
+        try {
+            var loaded = LongBitmap.of(likeRepository.likedPostIdsByUser(userId).stream().mapToLong(Long::longValue).toArray());
+            LongBitmap installed;
+            synchronized (pending) {
+                var current = bitmaps.get(userId);
+                installed = current != null ? current : loaded;
+                for (long update : pending.updates) {
+                    if (update > 0) {
+                        installed.add(update);
+                    } else {
+                        installed.remove(-update);
+                    }
+                }
+                pending.updates.clear();
+                if (current == null) {
+                    if (bitmaps.size() >= maxUsers) {
+                        evictOne();
+                    }
+                    var raced = bitmaps.putIfAbsent(userId, loaded);
+                    installed = raced != null ? raced : loaded;
+                }
+                pending.installed = true;
+            }
+            log.debug("Loaded liked posts bitmap for user {} with {} posts in {} bytes", userId, installed.cardinality(), installed.sizeInBytes());
+            return installed;
+        } finally {
+            loading.remove(userId, pending);
+        }
+    }
+
+    private void evictOne() {
+        var iterator = bitmaps.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class PendingLoad {
+        private final List<Long> updates = new ArrayList<>();
+        private boolean installed;
+    }
+}
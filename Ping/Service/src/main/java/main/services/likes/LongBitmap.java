@@ -0,0 +1,199 @@
+package main.services.likes;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative longs in the style of a Roaring bitmap. Values are split into
+ * a 48-bit key and a 16-bit low part; each key owns either a sorted {@code char[]} (sparse, up to
+ * {@value #ARRAY_MAX} values) or a 1024-word bitset (dense), whichever is smaller.
+ */
+public class LongBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITSET_WORDS = 1 << 10;
+
+    private long[] keys = new long[0];
+    private Object[] containers = new Object[0];
+    private char[] cardinalities = new char[0];
+
+    public static LongBitmap of(long[] values) {
+        var bitmap = new LongBitmap();
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (long value : sorted) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public synchronized boolean add(long value) {
+        long key = value >>> 16;
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            index = -index - 1;
+            keys = insert(keys, index, key);
+            containers = insert(containers, index, new char[]{low});
+            cardinalities = insert(cardinalities, index, (char) 0);
+            return true;
+        }
+
+        int count = cardinalities[index] + 1;
+        if (containers[index] instanceof long[] words) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            words[low >>> 6] |= mask;
+            cardinalities[index] = (char) count;
+            return true;
+        }
+
+        char[] values = (char[]) containers[index];
+        int position = Arrays.binarySearch(values, 0, count, low);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (count == ARRAY_MAX) {
+            long[] words = new long[BITSET_WORDS];
+            for (int i = 0; i < count; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            words[low >>> 6] |= 1L << low;
+            containers[index] = words;
+        } else {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+                containers[index] = values;
+            }
+            System.arraycopy(values, position, values, position + 1, count - position);
+            values[position] = low;
+        }
+        cardinalities[index] = (char) count;
+        return true;
+    }
+
+    public synchronized boolean remove(long value) {
+        int index = Arrays.binarySearch(keys, value >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        int cardinality = cardinalities[index] + 1;
+        if (containers[index] instanceof long[] words) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) == 0) {
+                return false;
+            }
+            words[low >>> 6] &= ~mask;
+            cardinality--;
+            if (cardinality <= ARRAY_MAX) {
+                containers[index] = toArray(words, cardinality);
+            }
+        } else {
+            char[] values = (char[]) containers[index];
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, cardinality - 1 - position);
+            cardinality--;
+        }
+
+        if (cardinality == 0) {
+            keys = delete(keys, index);
+            containers = delete(containers, index);
+            cardinalities = delete(cardinalities, index);
+        } else {
+            cardinalities[index] = (char) (cardinality - 1);
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(long value) {
+        int index = Arrays.binarySearch(keys, value >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (containers[index] instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) containers[index], 0, cardinalities[index] + 1, low) >= 0;
+    }
+
+    public synchronized long cardinality() {
+        long total = 0;
+        for (char cardinality : cardinalities) {
+            total += cardinality + 1;
+        }
+        return total;
+    }
+
+    public synchronized long sizeInBytes() {
+        long bytes = keys.length * 8L + cardinalities.length * 2L;
+        for (Object container : containers) {
+            bytes += container instanceof long[] words ? words.length * 8L : ((char[]) container).length * 2L;
+        }
+        return bytes;
+    }
+
+    private static char[] toArray(long[] words, int cardinality) {
+        char[] values = new char[cardinality];
+        int position = 0;
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                values[position++] = (char) (word * 64 + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return values;
+    }
+
+    private static long[] insert(long[] array, int index, long value) {
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Object[] insert(Object[] array, int index, Object value) {
+        Object[] result = new Object[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static char[] insert(char[] array, int index, char value) {
+        char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static long[] delete(long[] array, int index) {
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static Object[] delete(Object[] array, int index) {
+        Object[] result = new Object[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static char[] delete(char[] array, int index) {
+        char[] result = new char[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+}
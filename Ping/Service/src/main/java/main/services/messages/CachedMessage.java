@@ -0,0 +1,27 @@
+package main.services.messages;
+
+import main.messages.Message;
+import main.users.User;
+
+public record CachedMessage(Long id, Long seq, String text, String clientMessageId, Long createdAt, User sender) {
+
+    private static final int OVERHEAD_BYTES = 120;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    public Message toMessage() {
+        var message = Message.builder().seq(seq).text(text).clientMessageId(clientMessageId).user(sender).build();
+        message.setId(id);
+        message.setCreatedAt(createdAt);
+        message.setUpdatedAt(createdAt);
+        return message;
+    }
+
+    public CachedMessage withSender(User sender) {
+        return new CachedMessage(id, seq, text, clientMessageId, createdAt, sender);
+    }
+
+    public long sizeInBytes() {
+        long bytes = OVERHEAD_BYTES + STRING_OVERHEAD_BYTES + 2L * text.length();
+        return clientMessageId == null ? bytes : bytes + STRING_OVERHEAD_BYTES + 2L * clientMessageId.length();
+    }
+}
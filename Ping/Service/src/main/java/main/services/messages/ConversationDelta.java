@@ -0,0 +1,8 @@
+package main.services.messages;
+
+import main.messages.Message;
+
+import java.util.List;
+
+public record ConversationDelta(Long conversationId, Long lastSeq, boolean tooFarBehind, List<Message> messages) {
+}
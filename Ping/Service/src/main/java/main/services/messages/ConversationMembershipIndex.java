@@ -0,0 +1,153 @@
+package main.services.messages;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.messages.ConversationMemberRepository;
+import main.services.likes.LongBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-conversation {@link LongBitmap} of member user ids, so authorising a send is a bitmap
+ * lookup instead of initialising the participants collection. Loaded from
+ * {@code conversation_member} on first use and kept current by the conversation lifecycle;
+ * like {@link main.services.likes.LikedPostsIndex}, updates for unloaded conversations are
+ * dropped and picked up by the next load. The load query runs outside the map; joins and leaves
+ * that arrive while it runs are queued and replayed before the bitmap is installed, and an
+ * invalidation during the load keeps its result out of the map.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationMembershipIndex {
+
+    private final ConversationMemberRepository conversationMemberRepository;
+
+    @Value("${chat.membership.max-conversations:100000}")
+    private int maxConversations;
+
+    private final Map<Long, LongBitmap> members = new ConcurrentHashMap<>();
+    private final Map<Long, PendingLoad> loading = new ConcurrentHashMap<>();
+
+    public boolean isMember(Long conversationId, Long userId) {
+        var bitmap = members.get(conversationId);
+        if (bitmap == null) {
+            bitmap = load(conversationId);
+        }
+        return bitmap.contains(userId);
+    }
+
+    public void put(Long conversationId, Collection<Long> userIds) {
+        if (members.size() >= maxConversations) {
+            evictOne();
+        }
+        members.put(conversationId, LongBitmap.of(userIds.stream().mapToLong(Long::longValue).toArray()));
+    }
+
+    public void add(Long conversationId, Long userId) {
+        update(conversationId, userId, true);
+    }
+
+    public void remove(Long conversationId, Long userId) {
+        update(conversationId, userId, false);
+    }
+
+    public void invalidate(Long conversationId) {
+        var pending = loading.get(conversationId);
+        if (pending != null) {
+            synchronized (pending) {
+                pending.invalidated = true;
+            }
+        }
+        members.remove(conversationId);
+    }
+
+    public void invalidateAll() {
+        loading.values().forEach(pending -> {
+            synchronized (pending) {
+                pending.invalidated = true;
+            }
+        });
+        members.clear();
+    }
+
+    private void update(Long conversationId, long userId, boolean member) {
+        if (apply(conversationId, userId, member)) {
+            return;
+        }
+        var pending = loading.get(conversationId);
+        if (pending == null) {
+            return;
+        }
+        synchronized (pending) {
+            if (!pending.installed) {
+                pending.updates.add(member ? userId : -userId);
+                return;
+            }
+        }
+        apply(conversationId, userId, member);
+    }
+
+    private boolean apply(Long conversationId, long userId, boolean member) {
+        return members.computeIfPresent(conversationId, (id, bitmap) -> {
+            if (member) {
+                bitmap.add(userId);
+            } else {
+                bitmap.remove(userId);
+            }
+            return bitmap;
+        }) != null;
+    }
+
+    private LongBitmap load(Long conversationId) {
+        var pending = loading.computeIfAbsent(conversationId, id -> new PendingLoad());
+        try {
+            var loaded = LongBitmap.of(conversationMemberRepository.findUserIds(conversationId).stream().mapToLong(Long::longValue).toArray());
+            LongBitmap installed;
+            synchronized (pending) {
+                var current = members.get(conversationId);
+                installed = current != null ? current : loaded;
+                for (long update : pending.updates) {
+                    if (update > 0) {
+                        installed.add(update);
+                    } else {
+                        installed.remove(-update);
+                    }
+                }
+                pending.updates.clear();
+                if (current == null && !pending.invalidated) {
+                    if (members.size() >= maxConversations) {
+                        evictOne();
+                    }
+                    var raced = members.putIfAbsent(conversationId, loaded);
+                    installed = raced != null ? raced : loaded;
+                }
+                pending.installed = true;
+            }
+            log.debug("Loaded membership of conversation {} with {} members in {} bytes", conversationId, installed.cardinality(), installed.sizeInBytes());
+            return installed;
+        } finally {
+            loading.remove(conversationId, pending);
+        }
+    }
+
+    private void evictOne() {
+        var iterator = members.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class PendingLoad {
+        private final List<Long> updates = new ArrayList<>();
+        private boolean installed;
+        private boolean invalidated;
+    }
+}
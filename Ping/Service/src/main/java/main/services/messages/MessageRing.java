@@ -0,0 +1,97 @@
+package main.services.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * The newest messages of one conversation in ascending seq order, at most {@code capacity} of
+ * them. {@code complete} means nothing older exists, so short rings can still answer any page;
+ * {@code highestSeq} is the newest seq the ring has accounted for, deleted or not. Not
+ * thread-safe; {@link RecentMessageCache} serialises access.
+ */
+class MessageRing {
+
+    private final CachedMessage[] slots;
+    private int head;
+    private int size;
+    private boolean complete;
+    private long highestSeq;
+    private long bytes;
+
+    MessageRing(int capacity, boolean complete) {
+        this.slots = new CachedMessage[capacity];
+        this.complete = complete;
+    }
+
+    boolean append(CachedMessage message) {
+        if (message.seq() <= highestSeq) {
+            return false;
+        }
+        highestSeq = message.seq();
+        if (size == slots.length) {
+            bytes -= at(0).sizeInBytes();
+            head = (head + 1) % slots.length;
+            size--;
+            complete = false;
+        }
+        slots[(head + size) % slots.length] = message;
+        size++;
+        bytes += message.sizeInBytes();
+        return true;
+    }
+
+    boolean remove(Long messageId) {
+        for (int i = 0; i < size; i++) {
+            if (at(i).id().equals(messageId)) {
+                bytes -= at(i).sizeInBytes();
+                for (int j = i; j < size - 1; j++) {
+                    slots[(head + j) % slots.length] = at(j + 1);
+                }
+                slots[(head + size - 1) % slots.length] = null;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void replace(UnaryOperator<CachedMessage> mapper) {
+        for (int i = 0; i < size; i++) {
+            slots[(head + i) % slots.length] = mapper.apply(at(i));
+        }
+    }
+
+    boolean canServe(int limit) {
+        return complete || size >= limit;
+    }
+
+    List<CachedMessage> newest(int limit) {
+        int count = Math.min(limit, size);
+        List<CachedMessage> page = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            page.add(at(i));
+        }
+        return page;
+    }
+
+    void raiseHighestSeq(long seq) {
+        highestSeq = Math.max(highestSeq, seq);
+    }
+
+    long highestSeq() {
+        return highestSeq;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long sizeInBytes() {
+        return bytes + 64L + 8L * slots.length;
+    }
+
+    private CachedMessage at(int logicalIndex) {
+        return slots[(head + logicalIndex) % slots.length];
+    }
+}
@@ -0,0 +1,89 @@
+package main.services.messages;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-member "last read seq" watermarks. Reads only ever move a watermark forward in memory;
+ * the newest value per member is written back in one JDBC batch per flush, so a burst of read
+ * events costs a single row update. Flushed watermarks are dropped and served from the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReadWatermarkStore {
+
+    private static final String FLUSH_SQL = "update conversation_member set last_read_seq = greatest(last_read_seq, ?) where conversation_id = ? and user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Key, Long> watermarks = new ConcurrentHashMap<>();
+    private final Set<Key> dirty = ConcurrentHashMap.newKeySet();
+
+    public boolean advance(Long conversationId, Long userId, long seq, Long persisted) {
+        var advanced = new boolean[1];
+        watermarks.compute(new Key(conversationId, userId), (key, current) -> {
+            long known = Math.max(current == null ? 0 : current, persisted == null ? 0 : persisted);
+            if (seq <= known) {
+                return current;
+            }
+            advanced[0] = true;
+            dirty.add(key);
+            return seq;
+        });
+        return advanced[0];
+    }
+
+    public long lastRead(Long conversationId, Long userId, Long persisted) {
+        var watermark = watermarks.get(new Key(conversationId, userId));
+        long stored = persisted == null ? 0 : persisted;
+        return watermark == null ? stored : Math.max(stored, watermark);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${chat.read.flush-interval-ms:2000}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Key> keys = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (var iterator = dirty.iterator(); iterator.hasNext(); ) {
+            Key key = iterator.next();
+            iterator.remove();
+            var watermark = watermarks.get(key);
+            if (watermark != null) {
+                keys.add(key);
+                batch.add(new Object[]{watermark, key.conversationId(), key.userId()});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            for (int i = 0; i < keys.size(); i++) {
+                long flushed = (Long) batch.get(i)[0];
+                watermarks.computeIfPresent(keys.get(i), (key, watermark) -> watermark == flushed && !dirty.contains(key) ? null : watermark);
+            }
+            log.debug("Flushed read watermarks for {} members", batch.size());
+        } catch (Exception ex) {
+            log.error("Failed to flush {} read watermarks, retrying on next flush: {}", batch.size(), ex.getMessage(), ex);
+            dirty.addAll(keys);
+        }
+    }
+
+    private record Key(Long conversationId, Long userId) {
+    }
+}
@@ -0,0 +1,208 @@
+package main.services.messages;
+
+import lombok.extern.slf4j.Slf4j;
+import main.messages.Message;
+import main.users.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The newest {@code chat.cache.messages-per-conversation} messages of recently read
+ * conversations, so the first page of a chat is served without touching {@code message}.
+ * Conversations are kept in LRU order and the least recently used ones are evicted once the
+ * estimated footprint passes {@code chat.cache.max-bytes}. A ring only stays cached while it
+ * is contiguous with the conversation's seq; any gap drops it and the next read reloads it.
+ */
+@Slf4j
+@Component
+public class RecentMessageCache {
+
+    private final Map<Long, MessageRing> rings = new LinkedHashMap<>(256, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long bytes;
+
+    @Value("${chat.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.cache.messages-per-conversation:50}")
+    private int capacity;
+
+    @Value("${chat.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    public boolean canCache(int limit) {
+        return enabled && limit <= capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Optional<List<Message>> newest(Long conversationId, int limit) {
+        List<CachedMessage> page;
+        synchronized (rings) {
+            var ring = rings.get(conversationId);
+            if (ring == null || !ring.canServe(limit)) {
+                misses.increment();
+                return Optional.empty();
+            }
+            page = ring.newest(limit);
+        }
+        hits.increment();
+        return Optional.of(page.stream().map(CachedMessage::toMessage).toList());
+    }
+
+    public void install(Long conversationId, List<Message> ascending, long knownLastSeq) {
+        if (!enabled) {
+            return;
+        }
+        long highest = Math.max(knownLastSeq, ascending.isEmpty() ? 0 : ascending.get(ascending.size() - 1).getSeq());
+        var ring = new MessageRing(capacity, ascending.size() < capacity);
+        Map<Long, User> senders = new HashMap<>();
+        for (Message message : ascending) {
+            ring.append(toCached(message, senders));
+        }
+        ring.raiseHighestSeq(highest);
+        synchronized (rings) {
+            var previous = rings.put(conversationId, ring);
+            bytes += ring.sizeInBytes() - (previous == null ? 0 : previous.sizeInBytes());
+            evictOverBudget();
+        }
+    }
+
+    public void confirm(Long conversationId, long committedLastSeq) {
+        synchronized (rings) {
+            var ring = rings.get(conversationId);
+            if (ring != null && committedLastSeq > ring.highestSeq()) {
+                drop(conversationId);
+            }
+        }
+    }
+
+    public void append(Long conversationId, Message message) {
+        if (!enabled) {
+            return;
+        }
+        var cached = toCached(message, new HashMap<>());
+        synchronized (rings) {
+            var ring = rings.get(conversationId);
+            if (ring == null) {
+                return;
+            }
+            if (cached.seq() != ring.highestSeq() + 1) {
+                log.debug("Seq gap in cached conversation {} ({} after {}), dropping it", conversationId, cached.seq(), ring.highestSeq());
+                drop(conversationId);
+                return;
+            }
+            long before = ring.sizeInBytes();
+            ring.append(cached);
+            bytes += ring.sizeInBytes() - before;
+            evictOverBudget();
+        }
+    }
+
+    public void remove(Long conversationId, Long messageId) {
+        synchronized (rings) {
+            var ring = rings.get(conversationId);
+            if (ring != null) {
+                long before = ring.sizeInBytes();
+                ring.remove(messageId);
+                bytes += ring.sizeInBytes() - before;
+            }
+        }
+    }
+
+    public void invalidate(Long conversationId) {
+        synchronized (rings) {
+            drop(conversationId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (rings) {
+            rings.clear();
+            bytes = 0;
+        }
+    }
+
+    public void updateSender(User user) {
+        var snapshot = snapshot(user);
+        synchronized (rings) {
+            rings.values().forEach(ring -> ring.replace(message ->
+                    message.sender().getId().equals(user.getId()) ? message.withSender(snapshot) : message));
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getConversations() {
+        synchronized (rings) {
+            return rings.size();
+        }
+    }
+
+    public long getMessages() {
+        synchronized (rings) {
+            return rings.values().stream().mapToLong(MessageRing::size).sum();
+        }
+    }
+
+    public long getBytes() {
+        synchronized (rings) {
+            return bytes;
+        }
+    }
+
+    private void drop(Long conversationId) {
+        var ring = rings.remove(conversationId);
+        if (ring != null) {
+            bytes -= ring.sizeInBytes();
+        }
+    }
+
+    private void evictOverBudget() {
+        var iterator = rings.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().sizeInBytes();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private CachedMessage toCached(Message message, Map<Long, User> senders) {
+        var sender = senders.computeIfAbsent(message.getUser().getId(), id -> snapshot(message.getUser()));
+        return new CachedMessage(message.getId(), message.getSeq(), message.getText(), message.getClientMessageId(), message.getCreatedAt(), sender);
+    }
+
+    private User snapshot(User user) {
+        return User.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .phone(user.getPhone())
+                .lastName(user.getLastName())
+                .firstName(user.getFirstName())
+                .bio(user.getBio())
+                .profilePicture(user.getProfilePicture())
+                .profilePictureVariants(user.getProfilePictureVariants())
+                .build();
+    }
+}
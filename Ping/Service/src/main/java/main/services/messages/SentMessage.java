@@ -0,0 +1,6 @@
+package main.services.messages;
+
+import main.messages.Message;
+
+public record SentMessage(Message message, boolean duplicate) {
+}
@@ -0,0 +1,432 @@
+package main.services.search;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Immutable, memory-mapped index segment. Layout, big-endian:
+ * <pre>
+ * header    magic, version, docCount, termCount, docsOffset, termIndexOffset, dictOffset, maxMessageId
+ * postings  per term: blocks of up to {@value #BLOCK} ascending message ids as varint deltas from
+ *           the block's first id, followed by the skip list: per block (long firstId, int offset)
+ * docs      docCount x (messageId, conversationId), sorted by messageId
+ * termIndex termCount x int offset of the term's dictionary entry, terms in sorted order
+ * dict      per term: unsigned short length, UTF-8 bytes, int skip list offset, int docFreq
+ * </pre>
+ * Segments are written front to back by {@link Writer}, so building one never holds more than a
+ * block of postings in memory; offsets are ints, so a segment must stay under 2 GB. Queries walk
+ * postings newest first through a {@link Cursor}, which uses the skip list to decode only the
+ * blocks it lands in.
+ */
+public final class IndexSegment {
+
+    static final int BLOCK = 128;
+
+    private static final int MAGIC = 0x50534731;
+    private static final int VERSION = 2;
+    private static final int HEADER = 48;
+    private static final int SKIP_ENTRY = 12;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final int docsOffset;
+    private final int termIndexOffset;
+    private final int dictOffset;
+    private final long maxMessageId;
+
+    private IndexSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a message index segment: " + path);
+        }
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.docsOffset = (int) buffer.getLong(16);
+        this.termIndexOffset = (int) buffer.getLong(24);
+        this.dictOffset = (int) buffer.getLong(32);
+        this.maxMessageId = buffer.getLong(40);
+    }
+
+    public static IndexSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new IndexSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public long maxMessageId() {
+        return maxMessageId;
+    }
+
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    long docId(int index) {
+        return buffer.getLong(docsOffset + 16 * index);
+    }
+
+    long docConversation(int index) {
+        return buffer.getLong(docsOffset + 16 * index + 8);
+    }
+
+    String term(int index) {
+        int entry = dictOffset + buffer.getInt(termIndexOffset + 4 * index);
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort(entry))];
+        buffer.get(entry + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Postings postings(int index) {
+        int entry = dictOffset + buffer.getInt(termIndexOffset + 4 * index);
+        int position = entry + 2 + Short.toUnsignedInt(buffer.getShort(entry));
+        return new Postings(buffer.getInt(position), buffer.getInt(position + 4));
+    }
+
+    Postings find(String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = term(middle).compareTo(term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return postings(middle);
+            }
+        }
+        return null;
+    }
+
+    public long conversationOf(long messageId) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = docId(middle);
+            if (id < messageId) {
+                low = middle + 1;
+            } else if (id > messageId) {
+                high = middle - 1;
+            } else {
+                return docConversation(middle);
+            }
+        }
+        return -1;
+    }
+
+    /** One term's postings; blocks are decoded on demand through the skip list. */
+    final class Postings {
+
+        private final int skipOffset;
+        private final int docFreq;
+
+        private Postings(int skipOffset, int docFreq) {
+            this.skipOffset = skipOffset;
+            this.docFreq = docFreq;
+        }
+
+        int docFreq() {
+            return docFreq;
+        }
+
+        int blockCount() {
+            return (docFreq + BLOCK - 1) / BLOCK;
+        }
+
+        long firstId(int block) {
+            return buffer.getLong(skipOffset + SKIP_ENTRY * block);
+        }
+
+        /** Decodes {@code block} into {@code ids}, which must hold {@value #BLOCK} entries. */
+        int decode(int block, long[] ids) {
+            int count = block == blockCount() - 1 ? docFreq - block * BLOCK : BLOCK;
+            int cursor = buffer.getInt(skipOffset + SKIP_ENTRY * block + 8);
+            long previous = firstId(block);
+            ids[0] = previous;
+            for (int i = 1; i < count; i++) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(cursor++);
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                previous += delta;
+                ids[i] = previous;
+            }
+            return count;
+        }
+    }
+
+    /** Walks one term's postings from the newest message id down. */
+    static final class Cursor {
+
+        private final Postings postings;
+        private final long[] block = new long[BLOCK];
+        private int blockIndex;
+        private int position;
+        private boolean loaded;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+            this.blockIndex = postings.blockCount();
+        }
+
+        int docFreq() {
+            return postings.docFreq();
+        }
+
+        /**
+         * The largest id at or below {@code target}, or -1 once none is left. Targets must not
+         * increase between calls.
+         */
+        long advanceTo(long target) {
+            if (loaded && block[0] <= target) {
+                while (block[position] > target) {
+                    position--;
+                }
+                return block[position];
+            }
+            int low = 0;
+            int high = blockIndex - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (postings.firstId(middle) <= target) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (found < 0) {
+                blockIndex = 0;
+                loaded = false;
+                return -1;
+            }
+            blockIndex = found;
+            position = postings.decode(found, block) - 1;
+            loaded = true;
+            while (block[position] > target) {
+                position--;
+            }
+            return block[position];
+        }
+    }
+
+    /**
+     * Streams a segment to disk. Terms must be added in ascending order, each term's message ids
+     * and the docs in ascending id order. Postings go straight into the segment file; docs, the
+     * term index and the dictionary are spooled to sidecar files and appended by {@link #finish()}.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path temporary;
+        private final Path docsFile;
+        private final Path termIndexFile;
+        private final Path dictFile;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final DataOutputStream docs;
+        private final DataOutputStream termIndex;
+        private final DataOutputStream dict;
+
+        private long position = HEADER;
+        private int dictSize;
+        private int docCount;
+        private int termCount;
+        private long lastDoc = -1;
+        private long maxMessageId;
+        private boolean finished;
+
+        private String previousTerm;
+        private byte[] term;
+        private long[] blockFirstIds = new long[16];
+        private int[] blockOffsets = new int[16];
+        private int docFreq;
+        private long lastPosting;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.temporary = sibling(target, ".tmp");
+            this.docsFile = sibling(target, ".docs.tmp");
+            this.termIndexFile = sibling(target, ".terms.tmp");
+            this.dictFile = sibling(target, ".dict.tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            channel.position(HEADER);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            this.docs = spool(docsFile);
+            this.termIndex = spool(termIndexFile);
+            this.dict = spool(dictFile);
+        }
+
+        int docCount() {
+            return docCount;
+        }
+
+        void addDoc(long messageId, long conversationId) throws IOException {
+            if (messageId <= lastDoc) {
+                throw new IllegalArgumentException("Docs must be added in ascending message id order");
+            }
+            docs.writeLong(messageId);
+            docs.writeLong(conversationId);
+            lastDoc = messageId;
+            maxMessageId = messageId;
+            docCount++;
+        }
+
+        void startTerm(String value) {
+            if (term != null) {
+                throw new IllegalStateException("Term " + previousTerm + " is still open");
+            }
+            if (previousTerm != null && previousTerm.compareTo(value) >= 0) {
+                throw new IllegalArgumentException("Terms must be added in ascending order");
+            }
+            previousTerm = value;
+            term = value.getBytes(StandardCharsets.UTF_8);
+            docFreq = 0;
+        }
+
+        void addPosting(long messageId) throws IOException {
+            if (docFreq > 0 && messageId <= lastPosting) {
+                throw new IllegalArgumentException("Postings must be added in ascending message id order");
+            }
+            if (docFreq % BLOCK == 0) {
+                int block = docFreq / BLOCK;
+                if (block == blockFirstIds.length) {
+                    blockFirstIds = Arrays.copyOf(blockFirstIds, block * 2);
+                    blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                }
+                blockFirstIds[block] = messageId;
+                blockOffsets[block] = checkedPosition();
+            } else {
+                writeVarint(messageId - lastPosting);
+            }
+            lastPosting = messageId;
+            docFreq++;
+        }
+
+        void endTerm() throws IOException {
+            if (docFreq > 0) {
+                int skipOffset = checkedPosition();
+                for (int block = 0, blocks = (docFreq + BLOCK - 1) / BLOCK; block < blocks; block++) {
+                    out.writeLong(blockFirstIds[block]);
+                    out.writeInt(blockOffsets[block]);
+                    position += SKIP_ENTRY;
+                }
+                termIndex.writeInt(dictSize);
+                dict.writeShort(term.length);
+                dict.write(term);
+                dict.writeInt(skipOffset);
+                dict.writeInt(docFreq);
+                dictSize += 2 + term.length + 8;
+                termCount++;
+            }
+            term = null;
+        }
+
+        IndexSegment finish() throws IOException {
+            if (term != null) {
+                endTerm();
+            }
+            docs.close();
+            termIndex.close();
+            dict.close();
+            long docsOffset = position;
+            long termIndexOffset = docsOffset + Files.size(docsFile);
+            long dictOffset = termIndexOffset + Files.size(termIndexFile);
+            if (dictOffset + Files.size(dictFile) > Integer.MAX_VALUE) {
+                throw new IOException("Segment would exceed 2 GB");
+            }
+            Files.copy(docsFile, out);
+            Files.copy(termIndexFile, out);
+            Files.copy(dictFile, out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(docCount).putInt(termCount)
+                    .putLong(docsOffset).putLong(termIndexOffset).putLong(dictOffset).putLong(maxMessageId).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            out.close();
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            finished = true;
+            return open(target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!finished) {
+                    docs.close();
+                    termIndex.close();
+                    dict.close();
+                    out.close();
+                    Files.deleteIfExists(temporary);
+                }
+            } finally {
+                Files.deleteIfExists(docsFile);
+                Files.deleteIfExists(termIndexFile);
+                Files.deleteIfExists(dictFile);
+            }
+        }
+
+        private int checkedPosition() throws IOException {
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Segment would exceed 2 GB");
+            }
+            return (int) position;
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+                position++;
+            }
+            out.write((int) value);
+            position++;
+        }
+
+        private static DataOutputStream spool(Path file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        }
+
+        private static Path sibling(Path target, String suffix) {
+            return target.resolveSibling(target.getFileName() + suffix);
+        }
+    }
+}
@@ -0,0 +1,970 @@
+package main.services.search;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import main.messages.IndexableMessage;
+import main.messages.MessagesRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index over message text, kept under {@code chat.search.dir}. New messages land in an
+ * in-memory buffer that is written out as an immutable, memory-mapped {@link IndexSegment}
+ * every {@code chat.search.flush-docs} messages; deletions are tombstones until the segment
+ * holding them is merged. Merging is size-tiered: once {@code chat.search.merge-factor} segments
+ * of similar size exist they are streamed into one, never producing a segment above
+ * {@code chat.search.max-segment-mb}, so each message is rewritten about once per tier rather
+ * than on every merge. {@code manifest.properties} names the live generation and the highest
+ * flushed message id, so a restart only re-reads messages after that id (minus
+ * {@code chat.search.catch-up-overlap} for transactions that committed out of order); a missing,
+ * empty or unreadable index is rebuilt instead. All writes to disk happen on a single background
+ * thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageSearchIndex {
+
+    private static final String MANIFEST = "manifest.properties";
+    private static final String TOMBSTONES = "tombstones.bin";
+    private static final long MIN_TIER_BYTES = 1L << 20;
+    private static final int TIER_RATIO = 4;
+
+    private final MessagesRepository messagesRepository;
+
+    @Value("${chat.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.search.dir:search-index}")
+    private String directory;
+
+    @Value("${chat.search.flush-docs:5000}")
+    private int flushDocs;
+
+    @Value("${chat.search.rebuild-segment-docs:200000}")
+    private int rebuildSegmentDocs;
+
+    @Value("${chat.search.merge-factor:8}")
+    private int mergeFactor;
+
+    @Value("${chat.search.max-segment-mb:1024}")
+    private long maxSegmentMb;
+
+    @Value("${chat.search.batch-size:2000}")
+    private int batchSize;
+
+    @Value("${chat.search.catch-up-overlap:1000}")
+    private long catchUpOverlap;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final LongAdder queries = new LongAdder();
+    private volatile boolean caughtUp;
+    private boolean rebuildOnStartup;
+    private ExecutorService executor;
+
+    private Path root;
+    private String generation;
+    private List<IndexSegment> segments = List.of();
+    private Buffer buffer = new Buffer();
+    private Buffer flushing;
+    private Set<Long> tombstones = new HashSet<>();
+    private boolean tombstonesDirty;
+    private long nextSegment = 1;
+    private long watermark;
+
+    @PostConstruct
+    void open() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(directory);
+        try {
+            Files.createDirectories(root);
+            load();
+            rebuildOnStartup = segments.isEmpty() && watermark == 0;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Message search index at {} is unreadable, rebuilding: {}", root, ex.getMessage());
+            segments = List.of();
+            tombstones = new HashSet<>();
+            watermark = 0;
+            nextSegment = 1;
+            generation = newGeneration();
+            rebuildOnStartup = true;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        if (rebuildOnStartup && rebuilding.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    rebuildNow();
+                } finally {
+                    rebuilding.set(false);
+                    caughtUp = true;
+                }
+            });
+        } else {
+            executor.execute(this::catchUp);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (enabled && executor.isTerminated()) {
+            flushNow();
+        }
+    }
+
+    public void add(Long messageId, Long conversationId, String text) {
+        if (!enabled) {
+            return;
+        }
+        if (index(messageId, conversationId, MessageTokenizer.tokenize(text)) >= flushDocs && flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flushNow();
+            });
+        }
+    }
+
+    public void remove(Long messageId) {
+        removeAll(List.of(messageId));
+    }
+
+    public void removeAll(Collection<Long> messageIds) {
+        if (!enabled || messageIds.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            messageIds.forEach(buffer::remove);
+            tombstonesDirty |= tombstones.addAll(messageIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of messages containing every term, restricted to {@code conversationIds} and
+     * {@code messageId < beforeId}, newest first. Sources are searched newest first and each
+     * stops once it is below the oldest of {@code limit} hits already found.
+     */
+    public List<Long> search(Set<String> terms, Set<Long> conversationIds, long beforeId, int limit) {
+        if (!enabled || terms.isEmpty() || conversationIds.isEmpty()) {
+            return List.of();
+        }
+        queries.increment();
+        TreeSet<Long> hits = new TreeSet<>(Comparator.reverseOrder());
+        lock.readLock().lock();
+        try {
+            collect(buffer, terms, conversationIds, beforeId, limit, hits);
+            if (flushing != null) {
+                collect(flushing, terms, conversationIds, beforeId, limit, hits);
+            }
+            for (IndexSegment segment : segments.stream().sorted(Comparator.comparingLong(IndexSegment::maxMessageId).reversed()).toList()) {
+                collect(segment, terms, conversationIds, beforeId, limit, hits);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return List.copyOf(hits);
+    }
+
+    public boolean rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                rebuildNow();
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.search.flush-interval-ms:30000}")
+    public void flush() {
+        if (enabled && flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flushNow();
+            });
+        }
+    }
+
+    public boolean isCaughtUp() {
+        return caughtUp;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public int getSegments() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getIndexedMessages() {
+        lock.readLock().lock();
+        try {
+            return segments.stream().mapToLong(IndexSegment::docCount).sum() + (flushing == null ? 0 : flushing.size()) + buffer.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getBufferedMessages() {
+        lock.readLock().lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTombstones() {
+        lock.readLock().lock();
+        try {
+            return tombstones.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getBytes() {
+        lock.readLock().lock();
+        try {
+            return segments.stream().mapToLong(IndexSegment::sizeInBytes).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getWatermark() {
+        lock.readLock().lock();
+        try {
+            return watermark;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int index(long messageId, long conversationId, Set<String> terms) {
+        lock.writeLock().lock();
+        try {
+            if (!contains(messageId)) {
+                buffer.add(messageId, conversationId, terms);
+            }
+            return buffer.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean contains(long messageId) {
+        if (buffer.conversationOf(messageId) >= 0 || (flushing != null && flushing.conversationOf(messageId) >= 0)) {
+            return true;
+        }
+        return messageId <= watermark && inSegments(messageId);
+    }
+
+    private boolean inSegments(long messageId) {
+        for (IndexSegment segment : segments) {
+            if (segment.conversationOf(messageId) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collect(Buffer source, Set<String> terms, Set<Long> conversationIds, long beforeId, int limit, TreeSet<Long> hits) {
+        long[] matches = null;
+        for (String term : terms) {
+            long[] postings = source.postings(term);
+            if (postings == null) {
+                return;
+            }
+            matches = matches == null ? postings : intersect(matches, postings);
+            if (matches.length == 0) {
+                return;
+            }
+        }
+        for (int i = matches.length - 1; i >= 0 && !isFull(hits, limit, matches[i]); i--) {
+            long id = matches[i];
+            if (id < beforeId && !tombstones.contains(id) && conversationIds.contains(source.conversationOf(id))) {
+                addHit(hits, limit, id);
+            }
+        }
+    }
+
+    /**
+     * Intersects the terms' postings newest first, leapfrogging each cursor to the candidate the
+     * others agree on, starting from the rarest term.
+     */
+    private void collect(IndexSegment segment, Set<String> terms, Set<Long> conversationIds, long beforeId, int limit, TreeSet<Long> hits) {
+        List<IndexSegment.Cursor> cursors = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            var postings = segment.find(term);
+            if (postings == null) {
+                return;
+            }
+            cursors.add(new IndexSegment.Cursor(postings));
+        }
+        cursors.sort(Comparator.comparingInt(IndexSegment.Cursor::docFreq));
+        long candidate = beforeId - 1;
+        while (candidate > 0) {
+            long id = cursors.get(0).advanceTo(candidate);
+            if (id < 0 || isFull(hits, limit, id)) {
+                return;
+            }
+            long agreed = id;
+            for (int i = 1; i < cursors.size() && agreed == id; i++) {
+                agreed = cursors.get(i).advanceTo(id);
+            }
+            if (agreed < 0) {
+                return;
+            }
+            if (agreed == id) {
+                if (!tombstones.contains(id) && conversationIds.contains(segment.conversationOf(id))) {
+                    addHit(hits, limit, id);
+                }
+                candidate = id - 1;
+            } else {
+                candidate = agreed;
+            }
+        }
+    }
+
+    private static boolean isFull(TreeSet<Long> hits, int limit, long id) {
+        return hits.size() >= limit && id <= hits.last();
+    }
+
+    private static void addHit(TreeSet<Long> hits, int limit, long id) {
+        hits.add(id);
+        if (hits.size() > limit) {
+            hits.pollLast();
+        }
+    }
+
+    private void catchUp() {
+        long from;
+        lock.readLock().lock();
+        try {
+            from = Math.max(0, watermark - catchUpOverlap);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            long read = indexFrom(from);
+            flushNow();
+            log.info("Message search index caught up from message ID {} ({} messages read, {} segments)", from, read, getSegments());
+        } catch (RuntimeException ex) {
+            log.error("Message search index catch-up from message ID {} failed: {}", from, ex.getMessage(), ex);
+        } finally {
+            caughtUp = true;
+        }
+    }
+
+    private long indexFrom(long afterId) {
+        long read = 0;
+        for (var batch = messagesRepository.findForIndex(afterId, PageRequest.of(0, batchSize)); !batch.isEmpty();
+             batch = messagesRepository.findForIndex(afterId, PageRequest.of(0, batchSize))) {
+            for (IndexableMessage message : batch) {
+                if (index(message.id(), message.conversationId(), MessageTokenizer.tokenize(message.text())) >= flushDocs) {
+                    flushNow();
+                }
+            }
+            afterId = batch.get(batch.size() - 1).id();
+            read += batch.size();
+        }
+        return read;
+    }
+
+    private void flushNow() {
+        Buffer pending;
+        Path target;
+        lock.writeLock().lock();
+        try {
+            if (buffer.size() == 0) {
+                if (tombstonesDirty) {
+                    writeManifest();
+                }
+                return;
+            }
+            pending = buffer;
+            flushing = pending;
+            buffer = new Buffer();
+            target = root.resolve(generation).resolve(segmentName(nextSegment++));
+        } catch (IOException ex) {
+            log.error("Failed to persist message search tombstones: {}", ex.getMessage(), ex);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndexSegment segment;
+        try {
+            segment = pending.writeTo(target);
+        } catch (IOException ex) {
+            log.error("Failed to flush {} messages to search segment {}: {}", pending.size(), target, ex.getMessage(), ex);
+            lock.writeLock().lock();
+            try {
+                pending.addAll(buffer);
+                buffer = pending;
+                flushing = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            segments = append(segments, segment);
+            watermark = Math.max(watermark, segment.maxMessageId());
+            flushing = null;
+            writeManifest();
+        } catch (IOException ex) {
+            log.error("Failed to write message search manifest: {}", ex.getMessage(), ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Flushed {} messages to search segment {}", segment.docCount(), target.getFileName());
+        mergeSegments();
+    }
+
+    private void mergeSegments() {
+        var merging = pickMerge();
+        while (!merging.isEmpty() && mergeNow(merging)) {
+            merging = pickMerge();
+        }
+    }
+
+    /**
+     * The smallest {@code mergeFactor} segments of one size tier: sorted by size, the first window
+     * whose largest segment is at most {@code TIER_RATIO} times its smallest (segments under
+     * {@code MIN_TIER_BYTES} count as that size) and whose total stays within the segment cap.
+     */
+    private List<IndexSegment> pickMerge() {
+        List<IndexSegment> sorted;
+        lock.readLock().lock();
+        try {
+            sorted = segments.stream().sorted(Comparator.comparingLong(IndexSegment::sizeInBytes)).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+        long maxSegmentBytes = Math.min(maxSegmentMb << 20, Integer.MAX_VALUE);
+        for (int start = 0; start + mergeFactor <= sorted.size(); start++) {
+            var window = sorted.subList(start, start + mergeFactor);
+            long smallest = Math.max(window.get(0).sizeInBytes(), MIN_TIER_BYTES);
+            long total = window.stream().mapToLong(IndexSegment::sizeInBytes).sum();
+            if (window.get(mergeFactor - 1).sizeInBytes() <= smallest * TIER_RATIO && total <= maxSegmentBytes) {
+                return window;
+            }
+        }
+        return List.of();
+    }
+
+    private boolean mergeNow(List<IndexSegment> merging) {
+        Set<Long> deleted;
+        Path target;
+        lock.writeLock().lock();
+        try {
+            deleted = new HashSet<>(tombstones);
+            target = root.resolve(generation).resolve(segmentName(nextSegment++));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Set<Long> purged = new HashSet<>();
+        IndexSegment merged;
+        try {
+            merged = merge(merging, deleted, purged, target);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Failed to merge {} search segments: {}", merging.size(), ex.getMessage(), ex);
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<IndexSegment> result = new ArrayList<>(segments);
+            result.removeAll(merging);
+            if (merged != null) {
+                result.add(merged);
+            }
+            segments = Collections.unmodifiableList(result);
+            purged.removeIf(this::contains);
+            tombstonesDirty |= tombstones.removeAll(purged);
+            writeManifest();
+        } catch (IOException ex) {
+            log.error("Failed to write message search manifest after merge: {}", ex.getMessage(), ex);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        merging.forEach(segment -> deleteQuietly(segment.path()));
+        log.info("Merged {} search segments into one with {} messages ({} deletions purged)",
+                merging.size(), merged == null ? 0 : merged.docCount(), purged.size());
+        return true;
+    }
+
+    private void rebuildNow() {
+        String next = newGeneration();
+        Path target = root.resolve(next);
+        long startedAt = System.currentTimeMillis();
+        List<IndexSegment> built = new ArrayList<>();
+        long sequence = 1;
+        long afterId = 0;
+        try {
+            var local = new Buffer();
+            for (var batch = messagesRepository.findForIndex(afterId, PageRequest.of(0, batchSize)); !batch.isEmpty();
+                 batch = messagesRepository.findForIndex(afterId, PageRequest.of(0, batchSize))) {
+                for (IndexableMessage message : batch) {
+                    local.add(message.id(), message.conversationId(), MessageTokenizer.tokenize(message.text()));
+                }
+                afterId = batch.get(batch.size() - 1).id();
+                if (local.size() >= rebuildSegmentDocs) {
+                    built.add(local.writeTo(target.resolve(segmentName(sequence++))));
+                    local = new Buffer();
+                }
+            }
+            if (local.size() > 0) {
+                built.add(local.writeTo(target.resolve(segmentName(sequence++))));
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.error("Message search index rebuild failed after message ID {}: {}", afterId, ex.getMessage(), ex);
+            deleteQuietly(target);
+            return;
+        }
+
+        String previous;
+        lock.writeLock().lock();
+        try {
+            previous = generation;
+            generation = next;
+            segments = List.copyOf(built);
+            nextSegment = sequence;
+            watermark = built.stream().mapToLong(IndexSegment::maxMessageId).max().orElse(0);
+            // Only drop what the new segments hold: a send that committed out of order can sit
+            // in the buffer below afterId without having been seen by the scan.
+            buffer.removeIf(this::inSegments);
+            tombstones.removeIf(id -> id <= watermark && !contains(id));
+            tombstonesDirty = true;
+            writeManifest();
+        } catch (IOException ex) {
+            log.error("Failed to write message search manifest after rebuild: {}", ex.getMessage(), ex);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        deleteQuietly(root.resolve(previous));
+        long tail = indexFrom(Math.max(0, afterId - catchUpOverlap));
+        flushNow();
+        log.info("Rebuilt message search index generation {} up to message ID {} in {} ms ({} messages indexed since)",
+                next, afterId, System.currentTimeMillis() - startedAt, tail);
+    }
+
+    private void load() throws IOException {
+        Path manifestFile = root.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifestFile)) {
+            generation = newGeneration();
+            return;
+        }
+        Properties manifest = new Properties();
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            manifest.load(reader);
+        }
+        generation = manifest.getProperty("generation");
+        nextSegment = Long.parseLong(manifest.getProperty("next-segment", "1"));
+        watermark = Long.parseLong(manifest.getProperty("watermark", "0"));
+        Path generationDir = root.resolve(generation);
+        List<IndexSegment> opened = new ArrayList<>();
+        for (String name : manifest.getProperty("segments", "").split(",")) {
+            if (!name.isBlank()) {
+                opened.add(IndexSegment.open(generationDir.resolve(name)));
+            }
+        }
+        segments = List.copyOf(opened);
+        tombstones = readTombstones(generationDir.resolve(TOMBSTONES));
+        removeOrphans(opened.stream().map(IndexSegment::path).collect(Collectors.toSet()));
+        log.info("Opened message search index generation {} with {} segments up to message ID {}", generation, segments.size(), watermark);
+    }
+
+    private void writeManifest() throws IOException {
+        Path generationDir = root.resolve(generation);
+        if (tombstonesDirty) {
+            writeTombstones(generationDir.resolve(TOMBSTONES));
+            tombstonesDirty = false;
+        }
+        Properties manifest = new Properties();
+        manifest.setProperty("generation", generation);
+        manifest.setProperty("segments", segments.stream().map(segment -> segment.path().getFileName().toString()).collect(Collectors.joining(",")));
+        manifest.setProperty("next-segment", Long.toString(nextSegment));
+        manifest.setProperty("watermark", Long.toString(watermark));
+        Path temporary = root.resolve(MANIFEST + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            manifest.store(writer, null);
+        }
+        Files.move(temporary, root.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void writeTombstones(Path file) throws IOException {
+        long[] ids = tombstones.stream().mapToLong(Long::longValue).sorted().toArray();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(ids.length);
+            for (long id : ids) {
+                out.writeLong(id);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Set<Long> readTombstones(Path file) throws IOException {
+        Set<Long> ids = new HashSet<>();
+        if (!Files.isRegularFile(file)) {
+            return ids;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (int count = in.readInt(); count > 0; count--) {
+                ids.add(in.readLong());
+            }
+        }
+        return ids;
+    }
+
+    private void removeOrphans(Set<Path> live) throws IOException {
+        Path generationDir = root.resolve(generation);
+        try (Stream<Path> children = Files.list(root)) {
+            children.filter(Files::isDirectory).filter(child -> !child.equals(generationDir)).forEach(this::deleteQuietly);
+        }
+        try (Stream<Path> files = Files.list(generationDir)) {
+            files.filter(file -> !live.contains(file) && !file.getFileName().toString().equals(TOMBSTONES)).forEach(this::deleteQuietly);
+        }
+    }
+
+    private String newGeneration() {
+        String name = "g" + System.currentTimeMillis();
+        try {
+            Files.createDirectories(root.resolve(name));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not create search index directory " + root.resolve(name), ex);
+        }
+        return name;
+    }
+
+    private void deleteQuietly(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Streams a k-way merge of {@code sources} into {@code target}, dropping {@code deleted} ids
+     * (recorded in {@code purged}). Only one decoded block per source is held at a time.
+     */
+    private static IndexSegment merge(List<IndexSegment> sources, Set<Long> deleted, Set<Long> purged, Path target) throws IOException {
+        try (var writer = new IndexSegment.Writer(target)) {
+            int[] next = new int[sources.size()];
+            long last = -1;
+            while (true) {
+                int min = -1;
+                for (int s = 0; s < sources.size(); s++) {
+                    if (next[s] < sources.get(s).docCount() && (min < 0 || sources.get(s).docId(next[s]) < sources.get(min).docId(next[min]))) {
+                        min = s;
+                    }
+                }
+                if (min < 0) {
+                    break;
+                }
+                var source = sources.get(min);
+                long id = source.docId(next[min]);
+                long conversationId = source.docConversation(next[min]++);
+                if (deleted.contains(id)) {
+                    purged.add(id);
+                } else if (id != last) {
+                    writer.addDoc(id, conversationId);
+                    last = id;
+                }
+            }
+            if (writer.docCount() == 0) {
+                return null;
+            }
+
+            PriorityQueue<TermCursor> terms = new PriorityQueue<>(Comparator.comparing(TermCursor::term));
+            for (IndexSegment source : sources) {
+                if (source.termCount() > 0) {
+                    terms.add(new TermCursor(source));
+                }
+            }
+            List<TermCursor> matching = new ArrayList<>();
+            while (!terms.isEmpty()) {
+                String term = terms.peek().term();
+                while (!terms.isEmpty() && terms.peek().term().equals(term)) {
+                    matching.add(terms.poll());
+                }
+                mergePostings(term, matching, deleted, writer);
+                for (TermCursor cursor : matching) {
+                    if (cursor.advance()) {
+                        terms.add(cursor);
+                    }
+                }
+                matching.clear();
+            }
+            return writer.finish();
+        }
+    }
+
+    private static void mergePostings(String term, List<TermCursor> cursors, Set<Long> deleted, IndexSegment.Writer writer) throws IOException {
+        List<PostingIterator> iterators = cursors.stream().map(cursor -> new PostingIterator(cursor.postings())).toList();
+        boolean started = false;
+        long last = -1;
+        while (true) {
+            PostingIterator min = null;
+            for (PostingIterator iterator : iterators) {
+                if (iterator.hasNext() && (min == null || iterator.peek() < min.peek())) {
+                    min = iterator;
+                }
+            }
+            if (min == null) {
+                break;
+            }
+            long id = min.next();
+            if (id == last || deleted.contains(id)) {
+                continue;
+            }
+            if (!started) {
+                writer.startTerm(term);
+                started = true;
+            }
+            writer.addPosting(id);
+            last = id;
+        }
+        if (started) {
+            writer.endTerm();
+        }
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static List<IndexSegment> append(List<IndexSegment> list, IndexSegment segment) {
+        List<IndexSegment> result = new ArrayList<>(list);
+        result.add(segment);
+        return Collections.unmodifiableList(result);
+    }
+
+    private static String segmentName(long sequence) {
+        return String.format("%08d.seg", sequence);
+    }
+
+    private static final class Buffer {
+        private final Map<Long, Long> docs = new HashMap<>();
+        private final Map<String, List<Long>> terms = new HashMap<>();
+
+        void add(long messageId, long conversationId, Set<String> tokens) {
+            docs.put(messageId, conversationId);
+            for (String token : tokens) {
+                terms.computeIfAbsent(token, key -> new ArrayList<>()).add(messageId);
+            }
+        }
+
+        void addAll(Buffer other) {
+            docs.putAll(other.docs);
+            other.terms.forEach((term, ids) -> terms.computeIfAbsent(term, key -> new ArrayList<>()).addAll(ids));
+        }
+
+        void remove(long messageId) {
+            docs.remove(messageId);
+        }
+
+        void removeIf(LongPredicate indexed) {
+            docs.keySet().removeIf(indexed::test);
+        }
+
+        int size() {
+            return docs.size();
+        }
+
+        long[] postings(String term) {
+            var ids = terms.get(term);
+            return ids == null ? null : ids.stream().mapToLong(Long::longValue).filter(docs::containsKey).sorted().distinct().toArray();
+        }
+
+        long conversationOf(long messageId) {
+            return docs.getOrDefault(messageId, -1L);
+        }
+
+        IndexSegment writeTo(Path target) throws IOException {
+            try (var writer = new IndexSegment.Writer(target)) {
+                for (long id : docs.keySet().stream().mapToLong(Long::longValue).sorted().toArray()) {
+                    writer.addDoc(id, docs.get(id));
+                }
+                for (String term : new TreeSet<>(terms.keySet())) {
+                    long[] live = postings(term);
+                    if (live.length > 0) {
+                        writer.startTerm(term);
+                        for (long id : live) {
+                            writer.addPosting(id);
+                        }
+                        writer.endTerm();
+                    }
+                }
+                return writer.finish();
+            }
+        }
+    }
+
+    private static final class TermCursor {
+        private final IndexSegment segment;
+        private int index;
+        private String term;
+
+        TermCursor(IndexSegment segment) {
+            this.segment = segment;
+            this.term = segment.term(0);
+        }
+
+        String term() {
+            return term;
+        }
+
+        IndexSegment.Postings postings() {
+            return segment.postings(index);
+        }
+
+        boolean advance() {
+            if (++index >= segment.termCount()) {
+                return false;
+            }
+            term = segment.term(index);
+            return true;
+        }
+    }
+
+    private static final class PostingIterator {
+        private final IndexSegment.Postings postings;
+        private final long[] block = new long[IndexSegment.BLOCK];
+        private int blockIndex = -1;
+        private int size;
+        private int position;
+
+        PostingIterator(IndexSegment.Postings postings) {
+            this.postings = postings;
+        }
+
+        boolean hasNext() {
+            if (position < size) {
+                return true;
+            }
+            if (blockIndex + 1 >= postings.blockCount()) {
+                return false;
+            }
+            size = postings.decode(++blockIndex, block);
+            position = 0;
+            return true;
+        }
+
+        long peek() {
+            return block[position];
+        }
+
+        long next() {
+            return block[position++];
+        }
+    }
+}
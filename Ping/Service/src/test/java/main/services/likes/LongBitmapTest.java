@@ -0,0 +1,71 @@
+package main.services.likes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongBitmapTest {
+
+    @Test
+    void matchesHashSetUnderRandomAddAndRemove() {
+        var random = new Random(42);
+        var bitmap = new LongBitmap();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            long value = randomValue(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), bitmap.remove(value), "remove " + value);
+            } else {
+                assertEquals(expected.add(value), bitmap.add(value), "add " + value);
+            }
+            if (i % 10_000 == 0) {
+                assertEquals(expected.size(), bitmap.cardinality());
+            }
+        }
+        assertEquals(expected.size(), bitmap.cardinality());
+        for (int i = 0; i < 50_000; i++) {
+            long value = randomValue(random);
+            assertEquals(expected.contains(value), bitmap.contains(value), "contains " + value);
+        }
+        for (long value : expected) {
+            assertEquals(true, bitmap.contains(value), "contains " + value);
+        }
+    }
+
+    @Test
+    void convertsBetweenArrayAndBitsetContainers() {
+        var bitmap = new LongBitmap();
+        for (long value = 0; value < 10_000; value++) {
+            bitmap.add(value);
+        }
+        assertEquals(10_000, bitmap.cardinality());
+        for (long value = 0; value < 10_000; value += 2) {
+            bitmap.remove(value);
+        }
+        assertEquals(5_000, bitmap.cardinality());
+        for (long value = 0; value < 10_000; value++) {
+            assertEquals(value % 2 == 1, bitmap.contains(value), "contains " + value);
+        }
+    }
+
+    @Test
+    void ofMatchesValuesIgnoringDuplicates() {
+        var bitmap = LongBitmap.of(new long[]{5, 1, 70_000, 5, 1L << 40});
+        assertEquals(4, bitmap.cardinality());
+        assertEquals(true, bitmap.contains(1L << 40));
+        assertEquals(false, bitmap.contains(2));
+    }
+
+    private static long randomValue(Random random) {
+        // Three 16-bit chunks: a dense one, a sparse one and one that crosses the array limit.
+        return switch (random.nextInt(3)) {
+            case 0 -> random.nextInt(1 << 16);
+            case 1 -> (1L << 16) + random.nextInt(3_000) * 17L;
+            default -> (5L << 16) + random.nextInt(6_000);
+        };
+    }
+}